@@ -8,7 +8,17 @@ public interface Agent {
      * @param task The task to process
      * @return A CompletableFuture containing the result
      */
-    CompletableFuture<String> processTask(String task);
+    default CompletableFuture<String> processTask(String task) {
+        return processTask(task, null);
+    }
+
+    /**
+     * Process a task as a turn of a conversation
+     * @param task The task to process
+     * @param sessionId The conversation the task belongs to, or null for a one-off task
+     * @return A CompletableFuture containing the result
+     */
+    CompletableFuture<String> processTask(String task, String sessionId);
 
     /**
      * Get the current state of the agent
@@ -1,50 +1,84 @@
 package com.agent.agent.core;
 
+import com.agent.agent.memory.MemoryFilter;
+import com.agent.agent.memory.MemoryMatch;
 import com.agent.agent.memory.MemoryService;
+import com.agent.agent.memory.WorkingMemory;
 import com.agent.service.OllamaService;
+import com.agent.service.RequestPriority;
 import org.springframework.stereotype.Component;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
 @Component
 public class BaseAgent implements Agent {
     private final MemoryService memoryService;
     private final OllamaService ollamaService;
+    private final ContextAssembler contextAssembler;
+    private final WorkingMemory workingMemory;
     private AgentState state;
 
-    public BaseAgent(MemoryService memoryService, OllamaService ollamaService) {
+    public BaseAgent(MemoryService memoryService, OllamaService ollamaService, ContextAssembler contextAssembler,
+                     WorkingMemory workingMemory) {
         this.memoryService = memoryService;
         this.ollamaService = ollamaService;
+        this.contextAssembler = contextAssembler;
+        this.workingMemory = workingMemory;
         this.state = AgentState.IDLE;
     }
 
     @Override
-    public CompletableFuture<String> processTask(String task) {
+    public CompletableFuture<String> processTask(String task, String sessionId) {
         return CompletableFuture.supplyAsync(() -> {
             try {
                 state = AgentState.PROCESSING;
                 
-                // Retrieve relevant memories for context
-                var relevantMemories = memoryService.retrieveSimilarMemories(task, 5);
+                // Prefer the session's recent turns; fall back to long-term memory when they aren't enough
+                List<Float> taskEmbedding = memoryService.embed(task, RequestPriority.INTERACTIVE);
+                MemoryFilter filter = contextAssembler.memoryFilter();
+                List<MemoryMatch> candidates = new ArrayList<>();
+                if (sessionId != null) {
+                    candidates.addAll(workingMemory.search(sessionId, taskEmbedding, filter));
+                }
+                if (!workingMemory.isSufficient(candidates)) {
+                    Set<String> seen = new HashSet<>();
+                    candidates.forEach(match -> seen.add(match.id()));
+                    memoryService.retrieveMatches(taskEmbedding, contextAssembler.getCandidates(), filter).stream()
+                        .filter(match -> seen.add(match.id()))
+                        .forEach(candidates::add);
+                }
+
+                // Keep a diverse subset that fits the token budget
+                List<MemoryMatch> relevantMemories = contextAssembler.assemble(taskEmbedding, candidates);
+                memoryService.recordAccess(relevantMemories);
                 
                 // Build prompt with context
                 StringBuilder prompt = new StringBuilder();
                 prompt.append("Task: ").append(task).append("\n\n");
                 if (!relevantMemories.isEmpty()) {
                     prompt.append("Relevant context:\n");
-                    relevantMemories.forEach(memory -> prompt.append("- ").append(memory).append("\n"));
+                    relevantMemories.forEach(memory -> prompt.append("- ").append(memory.text()).append("\n"));
                 }
                 prompt.append("\nPlease process this task considering the above context.");
                 
                 // Get response from Ollama
-                String result = ollamaService.getChatCompletion(prompt.toString());
+                String result = ollamaService.getChatCompletion(prompt.toString(), RequestPriority.INTERACTIVE);
                 
                 // Store the result in memory
                 Map<String, String> metadata = Map.of(
                     "type", "result",
                     "task", task
                 );
-                memoryService.storeMemory(result, metadata);
+                // The caller waits for this write, so it keeps interactive priority
+                String memoryId = memoryService.storeMemory(result, metadata, RequestPriority.INTERACTIVE);
+                if (sessionId != null) {
+                    rememberTurn(sessionId, memoryId, task, result, taskEmbedding);
+                }
                 
                 state = AgentState.IDLE;
                 return result;
@@ -55,6 +89,24 @@ public class BaseAgent implements Agent {
         });
     }
 
+    /**
+     * Keep the turn in working memory under the long-term memory's id, so the same
+     * result found by both lookups is only used once.
+     */
+    private void rememberTurn(String sessionId, String memoryId, String task, String result, List<Float> taskEmbedding) {
+        float[] values = new float[taskEmbedding.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = taskEmbedding.get(i);
+        }
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("type", "result");
+        metadata.put("task", task);
+        metadata.put("session_id", sessionId);
+        metadata.put("timestamp", System.currentTimeMillis());
+        String text = "Previous task: " + task + "\nPrevious answer: " + result;
+        workingMemory.record(sessionId, new MemoryMatch(memoryId, 0, text, values, metadata));
+    }
+
     @Override
     public AgentState getState() {
         return state;
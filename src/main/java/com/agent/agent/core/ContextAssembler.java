@@ -0,0 +1,120 @@
+package com.agent.agent.core;
+
+import com.agent.agent.memory.MemoryFilter;
+import com.agent.agent.memory.MemoryMatch;
+import com.agent.agent.memory.VectorMath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Picks which retrieved memories go into a prompt.
+ *
+ * Candidates are ranked with maximal marginal relevance, so near-duplicates of an already
+ * chosen memory lose out to something that adds new information, and are then packed
+ * greedily into a token budget. A memory longer than the per-memory cap is cut at a
+ * sentence or word boundary rather than dropped.
+ */
+@Component
+public class ContextAssembler {
+    private static final Logger logger = LoggerFactory.getLogger(ContextAssembler.class);
+
+    /** Tokens for the "- " bullet and newline around each memory. */
+    private static final int LINE_OVERHEAD_TOKENS = 2;
+
+    @Value("${agent.context.candidates:20}")
+    private int candidates;
+
+    @Value("${agent.context.token-budget:1024}")
+    private int tokenBudget;
+
+    @Value("${agent.context.max-memory-tokens:256}")
+    private int maxMemoryTokens;
+
+    @Value("${agent.context.mmr-lambda:0.7}")
+    private double lambda;
+
+    @Value("${agent.context.max-memories:8}")
+    private int maxMemories;
+
+    @Value("${agent.context.memory-types:result,manual_update}")
+    private List<String> memoryTypes;
+
+    /**
+     * How many candidates to retrieve so MMR has something to choose between.
+     */
+    public int getCandidates() {
+        return Math.max(candidates, maxMemories);
+    }
+
+    /**
+     * Which memories may serve as context; keeps test data out of task prompts.
+     */
+    public MemoryFilter memoryFilter() {
+        return memoryTypes.isEmpty() ? MemoryFilter.none() : MemoryFilter.none().in("type", memoryTypes);
+    }
+
+    /**
+     * @param queryEmbedding embedding of the task, used to score candidates without values
+     * @param matches candidates in retrieval order, with values when available
+     * @return the memories to include, in selection order, with text truncated to fit
+     */
+    public List<MemoryMatch> assemble(List<Float> queryEmbedding, List<MemoryMatch> matches) {
+        float[] query = toArray(queryEmbedding);
+        List<MemoryMatch> remaining = new ArrayList<>(matches);
+        List<MemoryMatch> selected = new ArrayList<>();
+        int budget = tokenBudget;
+
+        while (!remaining.isEmpty() && selected.size() < maxMemories && budget > LINE_OVERHEAD_TOKENS) {
+            MemoryMatch best = null;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (MemoryMatch candidate : remaining) {
+                double score = marginalRelevance(candidate, query, selected);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = candidate;
+                }
+            }
+            remaining.remove(best);
+
+            int available = Math.min(maxMemoryTokens, budget - LINE_OVERHEAD_TOKENS);
+            String text = TokenEstimator.truncate(best.text(), available);
+            if (text.isEmpty()) {
+                continue;
+            }
+            budget -= TokenEstimator.estimate(text) + LINE_OVERHEAD_TOKENS;
+            selected.add(text.equals(best.text()) ? best
+                : new MemoryMatch(best.id(), best.score(), text, best.values(), best.metadata()));
+        }
+
+        logger.debug("Selected {} of {} memories using {} of {} context tokens",
+            selected.size(), matches.size(), tokenBudget - budget, tokenBudget);
+        return selected;
+    }
+
+    private double marginalRelevance(MemoryMatch candidate, float[] query, List<MemoryMatch> selected) {
+        if (candidate.values() == null) {
+            return lambda * candidate.score();
+        }
+        double relevance = VectorMath.cosine(query, candidate.values());
+        double redundancy = 0;
+        for (MemoryMatch chosen : selected) {
+            if (chosen.values() != null) {
+                redundancy = Math.max(redundancy, VectorMath.cosine(candidate.values(), chosen.values()));
+            }
+        }
+        return lambda * relevance - (1 - lambda) * redundancy;
+    }
+
+    private static float[] toArray(List<Float> values) {
+        float[] array = new float[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+}
@@ -0,0 +1,73 @@
+package com.agent.agent.core;
+
+/**
+ * Cheap token count estimate for prompt budgeting, without loading a model vocabulary.
+ *
+ * Follows how BPE vocabularies split English text: a run of letters or digits costs one
+ * token per started four characters, every other non-space character costs one token.
+ * It tends to overestimate slightly, which is the safe side for a budget.
+ */
+final class TokenEstimator {
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final String ELLIPSIS = " …";
+    private static final int ELLIPSIS_TOKENS = estimate(ELLIPSIS);
+
+    private TokenEstimator() {
+    }
+
+    static int estimate(String text) {
+        return (int) Math.min(Integer.MAX_VALUE, prefixLength(text, Integer.MAX_VALUE)[1]);
+    }
+
+    /**
+     * Cut text to at most {@code maxTokens}, preferring to end at a sentence and otherwise
+     * a word boundary, and mark the cut with an ellipsis. The ellipsis counts towards
+     * {@code maxTokens}, so the result always fits.
+     */
+    static String truncate(String text, int maxTokens) {
+        if (maxTokens <= 0) {
+            return "";
+        }
+        if (prefixLength(text, maxTokens)[0] >= text.length()) {
+            return text;
+        }
+        int end = (int) prefixLength(text, maxTokens - ELLIPSIS_TOKENS)[0];
+        int sentenceEnd = Math.max(text.lastIndexOf(". ", end - 1), Math.max(text.lastIndexOf("! ", end - 1), text.lastIndexOf("? ", end - 1)));
+        String kept;
+        if (sentenceEnd > end / 2) {
+            kept = text.substring(0, sentenceEnd + 1);
+        } else {
+            int wordEnd = text.lastIndexOf(' ', end);
+            kept = text.substring(0, wordEnd > end / 2 ? wordEnd : end).stripTrailing();
+        }
+        return kept.isBlank() ? "" : kept + ELLIPSIS;
+    }
+
+    /**
+     * @return {@code [length, tokens]} of the longest prefix costing at most {@code maxTokens}
+     */
+    private static long[] prefixLength(String text, long maxTokens) {
+        long tokens = 0;
+        int run = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            long cost = 0;
+            if (Character.isLetterOrDigit(c)) {
+                if (run % CHARS_PER_TOKEN == 0) {
+                    cost = 1;
+                }
+                run++;
+            } else {
+                run = 0;
+                if (!Character.isWhitespace(c)) {
+                    cost = 1;
+                }
+            }
+            if (tokens + cost > maxTokens) {
+                return new long[]{i, tokens};
+            }
+            tokens += cost;
+        }
+        return new long[]{text.length(), tokens};
+    }
+}
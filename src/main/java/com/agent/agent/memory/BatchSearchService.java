@@ -0,0 +1,180 @@
+package com.agent.agent.memory;
+
+import com.agent.service.EmbeddingService;
+import com.agent.service.RequestPriority;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs many semantic searches per request: queries are embedded in batched Ollama calls,
+ * one chunk at a time, and their vector queries fan out over a fixed pool of
+ * {@code memory.search.parallelism} threads. The pool is shared by all batch requests,
+ * so concurrent batches together never hold more than that many Pinecone connections.
+ *
+ * Admission is bounded too: a batch reserves one slot per query out of
+ * {@code memory.search.max-pending-queries} before anything is embedded, and is rejected
+ * when the slots are taken rather than queueing behind the other batches. Each query gets
+ * {@code memory.search.query-timeout-ms} from the moment a thread starts running it, so
+ * time spent queued behind the rest of the batch does not count; a query that runs past
+ * its deadline is cancelled and reported as failed.
+ *
+ * Pinecone's serverless query API takes one vector per request, so the fan-out is
+ * client-side rather than a multi-query call.
+ */
+@Service
+public class BatchSearchService {
+    private static final Logger logger = LoggerFactory.getLogger(BatchSearchService.class);
+
+    @Value("${memory.search.max-batch-queries:5000}")
+    private int maxBatchQueries;
+
+    @Value("${memory.search.embed-batch-size:${ollama.embedding.batch-size:64}}")
+    private int embedBatchSize;
+
+    @Value("${memory.search.query-timeout-ms:10000}")
+    private long queryTimeoutMs;
+
+    private final MemoryService memoryService;
+    private final EmbeddingService embeddingService;
+    private final ExecutorService executor;
+    private final ScheduledThreadPoolExecutor timeouts;
+    private final int maxPendingQueries;
+    private final Semaphore pendingQueries;
+
+    /**
+     * The outcome of one query: its matches, or the error that stopped it.
+     */
+    public record Result(String query, List<Map<String, Object>> matches, String error) {
+
+        public boolean succeeded() {
+            return error == null;
+        }
+    }
+
+    public BatchSearchService(MemoryService memoryService, EmbeddingService embeddingService,
+                              @Value("${memory.search.parallelism:8}") int parallelism,
+                              @Value("${memory.search.max-pending-queries:10000}") int maxPendingQueries) {
+        this.memoryService = memoryService;
+        this.embeddingService = embeddingService;
+        this.maxPendingQueries = maxPendingQueries;
+        this.pendingQueries = new Semaphore(maxPendingQueries);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "batch-search-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timeouts = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "batch-search-timeouts");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Most queries finish in time, so drop their cancelled timers instead of keeping them queued
+        timeouts.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * @return one result per query, in input order; a failed, timed out or unembeddable
+     * query is reported on its own result instead of failing the batch
+     * @throws RejectedExecutionException when other batches hold too many pending queries
+     */
+    public List<Result> search(List<String> queries, int topK, MemoryFilter filter) {
+        if (queries.size() > Math.min(maxBatchQueries, maxPendingQueries)) {
+            throw new IllegalArgumentException("At most " + Math.min(maxBatchQueries, maxPendingQueries)
+                + " queries per batch, got " + queries.size());
+        }
+        if (!pendingQueries.tryAcquire(queries.size())) {
+            throw new RejectedExecutionException("Batch search is saturated, "
+                + (maxPendingQueries - pendingQueries.availablePermits()) + " queries pending");
+        }
+        try {
+            return searchAdmitted(queries, topK, filter);
+        } finally {
+            pendingQueries.release(queries.size());
+        }
+    }
+
+    private List<Result> searchAdmitted(List<String> queries, int topK, MemoryFilter filter) {
+        long started = System.currentTimeMillis();
+
+        // Vector queries of one chunk run while the next chunk is being embedded
+        List<Future<List<Map<String, Object>>>> futures = new ArrayList<>(queries.size());
+        String[] embeddingErrors = new String[queries.size()];
+        for (int from = 0; from < queries.size(); from += embedBatchSize) {
+            int to = Math.min(from + embedBatchSize, queries.size());
+            List<List<Float>> embeddings;
+            try {
+                embeddings = embeddingService.getEmbeddingsBatch(queries.subList(from, to), RequestPriority.INGESTION);
+            } catch (RuntimeException e) {
+                logger.warn("Embedding queries {}-{} failed: {}", from, to - 1, e.getMessage());
+                Arrays.fill(embeddingErrors, from, to, "Embedding failed: " + e.getMessage());
+                futures.addAll(Collections.nCopies(to - from, null));
+                continue;
+            }
+            for (List<Float> embedding : embeddings) {
+                futures.add(submit(() -> memoryService.queryMemories(embedding, topK, false, filter)));
+            }
+        }
+
+        List<Result> results = new ArrayList<>(queries.size());
+        int failed = 0;
+        for (int i = 0; i < queries.size(); i++) {
+            Result result;
+            if (futures.get(i) == null) {
+                result = new Result(queries.get(i), null, embeddingErrors[i]);
+            } else {
+                try {
+                    result = new Result(queries.get(i), futures.get(i).get(), null);
+                } catch (ExecutionException e) {
+                    result = new Result(queries.get(i), null, e.getCause().getMessage());
+                } catch (CancellationException e) {
+                    result = new Result(queries.get(i), null, "Timed out after " + queryTimeoutMs + " ms");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    futures.subList(i, futures.size()).forEach(future -> {
+                        if (future != null) {
+                            future.cancel(true);
+                        }
+                    });
+                    throw new RuntimeException("Interrupted during batch search", e);
+                }
+            }
+            if (!result.succeeded()) {
+                failed++;
+            }
+            results.add(result);
+        }
+        logger.info("Batch search of {} queries finished in {} ms, {} failed",
+            queries.size(), System.currentTimeMillis() - started, failed);
+        return results;
+    }
+
+    /**
+     * Run the query on the pool, cancelling it once it has run for the query timeout.
+     */
+    private <T> Future<T> submit(Callable<T> query) {
+        FutureTask<T> task = new FutureTask<>(query);
+        executor.execute(() -> {
+            ScheduledFuture<?> timeout = timeouts.schedule(() -> task.cancel(true), queryTimeoutMs, TimeUnit.MILLISECONDS);
+            try {
+                task.run();
+            } finally {
+                timeout.cancel(false);
+            }
+        });
+        return task;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        timeouts.shutdownNow();
+    }
+}
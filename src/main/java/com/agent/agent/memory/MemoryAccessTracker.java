@@ -0,0 +1,43 @@
+package com.agent.agent.memory;
+
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts retrieval hits per memory id in process. Counts are folded into the stored
+ * {@code access_count} metadata by {@link MemoryConsolidationService}, so the hot
+ * retrieval path never writes to the vector store.
+ */
+@Component
+public class MemoryAccessTracker {
+    private final ConcurrentHashMap<String, LongAdder> pending = new ConcurrentHashMap<>();
+
+    public void recordAccess(String id) {
+        pending.computeIfAbsent(id, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Take the counts recorded since the last drain.
+     */
+    public Map<String, Long> drain() {
+        Map<String, Long> counts = new HashMap<>();
+        for (String id : pending.keySet()) {
+            LongAdder adder = pending.remove(id);
+            if (adder != null) {
+                counts.put(id, adder.sum());
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Give back counts that could not be persisted so the next run picks them up.
+     */
+    public void restore(Map<String, Long> counts) {
+        counts.forEach((id, count) -> pending.computeIfAbsent(id, key -> new LongAdder()).add(count));
+    }
+}
@@ -0,0 +1,424 @@
+package com.agent.agent.memory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * Keeps the memory index proportional to distinct knowledge rather than request count.
+ *
+ * A run scans stored memories one namespace at a time, groups near-duplicates with
+ * {@link SimHashLsh} plus a cosine check, keeps one survivor per group and deletes the
+ * rest, then evicts memories that are older than their type's maximum age and were
+ * retrieved fewer than {@code memory.consolidation.min-access-count} times. Survivors
+ * carry the merged {@code access_count} and {@code merged_count} in their metadata.
+ *
+ * A run loads at most {@code memory.consolidation.max-memories-per-run} memories, holding
+ * an int8 copy of each vector rather than the float values, and resumes where the
+ * previous run stopped. The LSH tables are sized for each window and the similarity
+ * threshold, so the candidate pairs checked grow roughly linearly with the window. Duplicates are only found within the memories
+ * loaded together, so the cap should cover the largest namespace where possible.
+ * Metadata changes are written with batched fetch-and-upsert calls before anything is
+ * deleted, so a failed run never loses merged counts; re-running after a failed delete
+ * can count the surviving duplicates' accesses twice, which only delays eviction. A run
+ * over an already consolidated index changes nothing.
+ */
+@Service
+public class MemoryConsolidationService {
+    private static final Logger logger = LoggerFactory.getLogger(MemoryConsolidationService.class);
+    private static final int LIST_PAGE_SIZE = 100;
+    private static final int FETCH_BATCH_SIZE = 100;
+    private static final long LSH_SEED = 42L;
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    @Value("${memory.consolidation.enabled:false}")
+    private boolean enabled;
+
+    @Value("${memory.consolidation.dry-run:false}")
+    private boolean dryRun;
+
+    @Value("${memory.consolidation.similarity-threshold:0.97}")
+    private double similarityThreshold;
+
+    @Value("${memory.consolidation.min-access-count:1}")
+    private long minAccessCount;
+
+    @Value("${memory.consolidation.delete-batch-size:1000}")
+    private int deleteBatchSize;
+
+    @Value("${memory.consolidation.max-memories-per-run:50000}")
+    private int maxMemoriesPerRun;
+
+    private final PineconeService pineconeService;
+    private final MemoryAccessTracker accessTracker;
+    private final MemoryNamespaces namespaces;
+    private final Map<String, Long> maxAgeDaysByType;
+
+    /** Where the next run starts when the previous one stopped at the cap. */
+    private String resumeNamespace;
+    private String resumeToken;
+
+    public MemoryConsolidationService(PineconeService pineconeService, MemoryAccessTracker accessTracker,
+                                      MemoryNamespaces namespaces,
+                                      @Value("${memory.consolidation.max-age-days:}") List<String> maxAgeDays) {
+        this.pineconeService = pineconeService;
+        this.accessTracker = accessTracker;
+        this.namespaces = namespaces;
+        this.maxAgeDaysByType = parseMaxAges(maxAgeDays);
+    }
+
+    private static Map<String, Long> parseMaxAges(List<String> entries) {
+        Map<String, Long> maxAges = new HashMap<>();
+        for (String entry : entries) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length == 2) {
+                maxAges.put(parts[0].trim(), Long.parseLong(parts[1].trim()));
+            } else if (!entry.isBlank()) {
+                throw new IllegalArgumentException("Expected type:days in memory.consolidation.max-age-days, got: " + entry);
+            }
+        }
+        return maxAges;
+    }
+
+    @Scheduled(cron = "${memory.consolidation.cron:0 0 3 * * *}")
+    public void scheduledConsolidation() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            consolidate();
+        } catch (Exception e) {
+            logger.error("Memory consolidation failed: {}", e.getMessage(), e);
+        }
+    }
+
+    public synchronized Map<String, Object> consolidate() {
+        long started = System.currentTimeMillis();
+        Map<String, Long> pendingAccess = accessTracker.drain();
+        Set<String> persistedAccess = new HashSet<>();
+        int scanned = 0;
+        int duplicates = 0;
+        int evicted = 0;
+        int updated = 0;
+        try {
+            List<String> all = new ArrayList<>(namespaces.all());
+            int first = resumeNamespace == null ? -1 : all.indexOf(resumeNamespace);
+            String token = first >= 0 ? resumeToken : null;
+            first = Math.max(first, 0);
+            resumeNamespace = null;
+            resumeToken = null;
+
+            for (int n = first; n < all.size() && scanned < maxMemoriesPerRun; n++) {
+                String namespace = all.get(n);
+                Window window = loadWindow(namespace, token, maxMemoriesPerRun - scanned, pendingAccess);
+                token = null;
+                scanned += window.memories.size();
+
+                Plan plan = plan(window.memories, started);
+                duplicates += plan.duplicates;
+                evicted += plan.deletions.size() - plan.duplicates;
+                if (!dryRun) {
+                    // Counts go in before deletes, so a failure part way never loses them
+                    writeMetadata(namespace, plan.updates);
+                    updated += plan.updates.size();
+                    for (StoredMemory memory : window.memories) {
+                        if (pendingAccess.containsKey(memory.id)) {
+                            persistedAccess.add(memory.id);
+                        }
+                    }
+                    deleteInBatches(namespace, plan.deletions);
+                }
+
+                if (window.nextToken != null) {
+                    resumeNamespace = namespace;
+                    resumeToken = window.nextToken;
+                } else if (scanned >= maxMemoriesPerRun && n + 1 < all.size()) {
+                    resumeNamespace = all.get(n + 1);
+                }
+            }
+        } finally {
+            // Counts of memories not written this run are picked up by the next one
+            Map<String, Long> unpersisted = new HashMap<>(pendingAccess);
+            unpersisted.keySet().removeAll(persistedAccess);
+            accessTracker.restore(unpersisted);
+        }
+
+        Map<String, Object> report = new HashMap<>();
+        report.put("scanned", scanned);
+        report.put("duplicatesRemoved", duplicates);
+        report.put("evicted", evicted);
+        report.put("updated", updated);
+        report.put("complete", resumeNamespace == null);
+        report.put("dryRun", dryRun);
+        report.put("durationMs", System.currentTimeMillis() - started);
+        logger.info("Memory consolidation finished: {}", report);
+        return report;
+    }
+
+    private record Window(List<StoredMemory> memories, String nextToken) {
+    }
+
+    /**
+     * Load up to {@code limit} memories of one namespace, starting at the given list token.
+     */
+    private Window loadWindow(String namespace, String token, int limit, Map<String, Long> pendingAccess) {
+        List<StoredMemory> memories = new ArrayList<>();
+        do {
+            PineconeService.VectorPage page = pineconeService.listVectorIds(namespace, token,
+                Math.min(LIST_PAGE_SIZE, limit - memories.size()));
+            for (int from = 0; from < page.ids().size(); from += FETCH_BATCH_SIZE) {
+                List<String> batch = page.ids().subList(from, Math.min(from + FETCH_BATCH_SIZE, page.ids().size()));
+                for (Map.Entry<String, Map<String, Object>> vector : pineconeService.fetchVectors(namespace, batch).entrySet()) {
+                    memories.add(StoredMemory.from(namespace, vector.getKey(), valuesOf(vector.getValue()),
+                        metadataOf(vector.getValue()), pendingAccess.getOrDefault(vector.getKey(), 0L)));
+                }
+            }
+            token = page.nextToken();
+        } while (token != null && memories.size() < limit);
+        return new Window(memories, token);
+    }
+
+    /**
+     * What a run does to a set of memories from one namespace.
+     *
+     * @param updates metadata fields to merge into each surviving memory that changed
+     * @param deletions duplicates first, then evicted memories
+     * @param duplicates how many of the deletions are merged duplicates
+     */
+    record Plan(Map<String, Map<String, Object>> updates, List<String> deletions, int duplicates) {
+    }
+
+    Plan plan(List<StoredMemory> memories, long now) {
+        Set<String> deletions = new LinkedHashSet<>();
+        List<StoredMemory> survivors = mergeDuplicates(memories, deletions);
+        int duplicates = deletions.size();
+        for (StoredMemory memory : memories) {
+            if (!deletions.contains(memory.id) && shouldEvict(memory, now)) {
+                deletions.add(memory.id);
+            }
+        }
+
+        Map<String, Map<String, Object>> updates = new LinkedHashMap<>();
+        for (StoredMemory survivor : survivors) {
+            if (!deletions.contains(survivor.id)) {
+                updates.put(survivor.id, Map.of(
+                    "access_count", survivor.accessCount,
+                    "merged_count", survivor.mergedCount));
+            }
+        }
+        for (StoredMemory memory : memories) {
+            if (memory.pendingAccess > 0 && !deletions.contains(memory.id) && !updates.containsKey(memory.id)) {
+                updates.put(memory.id, Map.of("access_count", memory.accessCount));
+            }
+        }
+        return new Plan(updates, new ArrayList<>(deletions), duplicates);
+    }
+
+    /**
+     * Fold each near-duplicate group into its most accessed, then newest, member.
+     *
+     * @return the survivors of groups that had duplicates
+     */
+    private List<StoredMemory> mergeDuplicates(List<StoredMemory> memories, Set<String> deletions) {
+        if (memories.size() < 2) {
+            return Collections.emptyList();
+        }
+        SimHashLsh lsh = SimHashLsh.forWindow(memories.get(0).quantized.length, memories.size(),
+            similarityThreshold, LSH_SEED);
+        long[][] signatures = new long[memories.size()][];
+        for (int i = 0; i < signatures.length; i++) {
+            signatures[i] = lsh.signature(memories.get(i).quantized);
+        }
+        int[] roots = lsh.cluster(signatures, (i, j) -> {
+            StoredMemory a = memories.get(i);
+            StoredMemory b = memories.get(j);
+            return a.kind.equals(b.kind) && a.namespace.equals(b.namespace) && a.cosine(b) >= similarityThreshold;
+        });
+
+        Map<Integer, List<StoredMemory>> groups = new HashMap<>();
+        for (int i = 0; i < roots.length; i++) {
+            groups.computeIfAbsent(roots[i], key -> new ArrayList<>()).add(memories.get(i));
+        }
+
+        List<StoredMemory> survivors = new ArrayList<>();
+        for (List<StoredMemory> group : groups.values()) {
+            if (group.size() < 2) {
+                continue;
+            }
+            StoredMemory survivor = Collections.max(group, Comparator
+                .comparingLong((StoredMemory memory) -> memory.accessCount)
+                .thenComparingLong(memory -> memory.timestamp));
+            for (StoredMemory memory : group) {
+                if (memory != survivor) {
+                    survivor.accessCount += memory.accessCount;
+                    survivor.mergedCount += memory.mergedCount;
+                    deletions.add(memory.id);
+                }
+            }
+            survivors.add(survivor);
+        }
+        return survivors;
+    }
+
+    private boolean shouldEvict(StoredMemory memory, long now) {
+        Long maxAgeDays = maxAgeDaysByType.get(memory.kind);
+        if (maxAgeDays == null || memory.timestamp <= 0) {
+            return false;
+        }
+        return now - memory.timestamp > maxAgeDays * DAY_MS && memory.accessCount < minAccessCount;
+    }
+
+    /**
+     * Merge field changes into stored metadata. Pinecone's update call takes one id, so
+     * vectors are fetched and upserted back a batch at a time instead.
+     */
+    @SuppressWarnings("unchecked")
+    private void writeMetadata(String namespace, Map<String, Map<String, Object>> updates) {
+        List<String> ids = new ArrayList<>(updates.keySet());
+        for (int from = 0; from < ids.size(); from += FETCH_BATCH_SIZE) {
+            List<String> batch = ids.subList(from, Math.min(from + FETCH_BATCH_SIZE, ids.size()));
+            List<Map<String, Object>> vectors = new ArrayList<>(batch.size());
+            pineconeService.fetchVectors(namespace, batch).forEach((id, stored) -> {
+                Map<String, Object> metadata = new HashMap<>(metadataOf(stored));
+                metadata.putAll(updates.get(id));
+                Map<String, Object> vector = new HashMap<>();
+                vector.put("id", id);
+                vector.put("values", stored.get("values"));
+                vector.put("metadata", metadata);
+                vectors.add(vector);
+            });
+            if (!vectors.isEmpty()) {
+                pineconeService.upsertVectors(namespace, vectors);
+            }
+        }
+    }
+
+    private void deleteInBatches(String namespace, List<String> ids) {
+        for (int from = 0; from < ids.size(); from += deleteBatchSize) {
+            pineconeService.deleteVectors(namespace, ids.subList(from, Math.min(from + deleteBatchSize, ids.size())));
+        }
+    }
+
+    private static float[] valuesOf(Map<String, Object> vector) {
+        float[] values = new float[0];
+        if (vector.get("values") instanceof List<?> list) {
+            values = new float[list.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = ((Number) list.get(i)).floatValue();
+            }
+        }
+        return values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> metadataOf(Map<String, Object> vector) {
+        return vector.get("metadata") instanceof Map<?, ?> map
+            ? (Map<String, Object>) map
+            : Collections.emptyMap();
+    }
+
+    /**
+     * Parse a stored timestamp, either epoch millis or the legacy {@code Date.toString()} form.
+     *
+     * @return epoch millis, or 0 when absent or unparseable
+     */
+    static long parseTimestamp(Object value) {
+        if (value instanceof Number number) {
+            return number.longValue();
+        }
+        if (value instanceof String text && !text.isBlank()) {
+            try {
+                return Long.parseLong(text);
+            } catch (NumberFormatException ignored) {
+                // fall through to the legacy format
+            }
+            try {
+                return new SimpleDateFormat("EEE MMM dd HH:mm:ss zzz yyyy", Locale.US).parse(text).getTime();
+            } catch (ParseException e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    static final class StoredMemory {
+        private final String namespace;
+        private final String id;
+        /** The vector scaled to int8, enough for a similarity check at a quarter of the heap. */
+        private final byte[] quantized;
+        private final double norm;
+        private final String kind;
+        private final long timestamp;
+        private final long pendingAccess;
+        private long accessCount;
+        private long mergedCount;
+
+        StoredMemory(String namespace, String id, float[] values, String kind, long timestamp,
+                     long accessCount, long pendingAccess, long mergedCount) {
+            this.namespace = namespace;
+            this.id = id;
+            this.quantized = quantize(values);
+            this.norm = norm(quantized);
+            this.kind = kind;
+            this.timestamp = timestamp;
+            this.pendingAccess = pendingAccess;
+            this.accessCount = accessCount + pendingAccess;
+            this.mergedCount = mergedCount;
+        }
+
+        static StoredMemory from(String namespace, String id, float[] values,
+                                 Map<String, Object> metadata, long pendingAccess) {
+            return new StoredMemory(
+                namespace,
+                id,
+                values,
+                MemoryNamespaces.kindOf(metadata),
+                parseTimestamp(metadata.get("timestamp")),
+                countOf(metadata.get("access_count")),
+                pendingAccess,
+                Math.max(1, countOf(metadata.get("merged_count")))
+            );
+        }
+
+        double cosine(StoredMemory other) {
+            int length = Math.min(quantized.length, other.quantized.length);
+            long dot = 0;
+            for (int i = 0; i < length; i++) {
+                dot += quantized[i] * other.quantized[i];
+            }
+            return norm == 0 || other.norm == 0 ? 0 : dot / (norm * other.norm);
+        }
+
+        private static byte[] quantize(float[] values) {
+            float maxAbs = 0;
+            for (float value : values) {
+                maxAbs = Math.max(maxAbs, Math.abs(value));
+            }
+            byte[] quantized = new byte[values.length];
+            if (maxAbs > 0) {
+                for (int i = 0; i < values.length; i++) {
+                    quantized[i] = (byte) Math.round(values[i] / maxAbs * 127);
+                }
+            }
+            return quantized;
+        }
+
+        private static double norm(byte[] quantized) {
+            long sum = 0;
+            for (byte value : quantized) {
+                sum += value * value;
+            }
+            return Math.sqrt(sum);
+        }
+
+        private static long countOf(Object value) {
+            return value instanceof Number number ? number.longValue() : 0;
+        }
+    }
+}
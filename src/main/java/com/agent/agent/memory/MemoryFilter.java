@@ -0,0 +1,235 @@
+package com.agent.agent.memory;
+
+import java.util.*;
+
+/**
+ * A conjunction of conditions on memory metadata: equality, set membership and numeric
+ * ranges (timestamps are epoch millis).
+ *
+ * The same filter is sent to Pinecone as a metadata {@code filter} and evaluated locally
+ * with {@link #matches} or {@link #select}, so a local index returns exactly what the
+ * remote one would. Filters are immutable; each method returns a narrowed copy.
+ */
+public final class MemoryFilter {
+    private static final MemoryFilter NONE = new MemoryFilter(List.of());
+    private static final Set<String> OPERATORS = Set.of("$eq", "$in", "$gt", "$gte", "$lt", "$lte");
+
+    private final List<Condition> conditions;
+
+    private record Condition(String field, String operator, Object operand) {
+
+        boolean test(Object value) {
+            if (value instanceof Collection<?> values) {
+                // Pinecone matches list-valued metadata when any element matches
+                return values.stream().anyMatch(this::test);
+            }
+            return switch (operator) {
+                case "$eq" -> sameValue(value, operand);
+                case "$in" -> ((Collection<?>) operand).stream().anyMatch(candidate -> sameValue(value, candidate));
+                // Range operators only ever match numbers, as in Pinecone
+                case "$gt" -> value instanceof Number number && compare(number) > 0;
+                case "$gte" -> value instanceof Number number && compare(number) >= 0;
+                case "$lt" -> value instanceof Number number && compare(number) < 0;
+                case "$lte" -> value instanceof Number number && compare(number) <= 0;
+                default -> false;
+            };
+        }
+
+        private int compare(Number value) {
+            return Double.compare(value.doubleValue(), ((Number) operand).doubleValue());
+        }
+
+        private static boolean sameValue(Object value, Object expected) {
+            if (value instanceof Number a && expected instanceof Number b) {
+                return a.doubleValue() == b.doubleValue();
+            }
+            return Objects.equals(value, expected);
+        }
+    }
+
+    private MemoryFilter(List<Condition> conditions) {
+        this.conditions = conditions;
+    }
+
+    /**
+     * The filter that matches every memory.
+     */
+    public static MemoryFilter none() {
+        return NONE;
+    }
+
+    public MemoryFilter eq(String field, Object value) {
+        return with(new Condition(field, "$eq", Objects.requireNonNull(value)));
+    }
+
+    public MemoryFilter in(String field, Collection<?> values) {
+        return with(new Condition(field, "$in", List.copyOf(values)));
+    }
+
+    /**
+     * Restrict a numeric field to {@code [from, to)}; either bound may be null.
+     */
+    public MemoryFilter range(String field, Long from, Long to) {
+        MemoryFilter filter = this;
+        if (from != null) {
+            filter = filter.with(new Condition(field, "$gte", from));
+        }
+        if (to != null) {
+            filter = filter.with(new Condition(field, "$lt", to));
+        }
+        return filter;
+    }
+
+    /**
+     * Restrict to memories stored in {@code [from, to)}, as epoch millis; either bound may be null.
+     */
+    public MemoryFilter storedBetween(Long from, Long to) {
+        return range("timestamp", from, to);
+    }
+
+    private MemoryFilter with(Condition condition) {
+        List<Condition> combined = new ArrayList<>(conditions);
+        combined.add(condition);
+        return new MemoryFilter(List.copyOf(combined));
+    }
+
+    public boolean isEmpty() {
+        return conditions.isEmpty();
+    }
+
+    public boolean matches(Map<String, ?> metadata) {
+        for (Condition condition : conditions) {
+            if (!condition.test(metadata.get(condition.field()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Pre-filter bitset over a local index: bit {@code i} is set when entry {@code i} matches.
+     */
+    public BitSet select(List<? extends Map<String, ?>> metadata) {
+        BitSet selected = new BitSet(metadata.size());
+        if (isEmpty()) {
+            selected.set(0, metadata.size());
+            return selected;
+        }
+        for (int i = 0; i < metadata.size(); i++) {
+            if (matches(metadata.get(i))) {
+                selected.set(i);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * The values a field is pinned to by equality or membership conditions.
+     *
+     * @return the allowed values, or null when the field is unconstrained
+     */
+    public Set<Object> allowedValues(String field) {
+        Set<Object> allowed = null;
+        for (Condition condition : conditions) {
+            if (!condition.field().equals(field)) {
+                continue;
+            }
+            Collection<?> values = switch (condition.operator()) {
+                case "$eq" -> List.of(condition.operand());
+                case "$in" -> (Collection<?>) condition.operand();
+                default -> null;
+            };
+            if (values != null) {
+                if (allowed == null) {
+                    allowed = new LinkedHashSet<>(values);
+                } else {
+                    allowed.retainAll(values);
+                }
+            }
+        }
+        return allowed;
+    }
+
+    /**
+     * The filter in Pinecone's metadata filter syntax, or null when it matches everything.
+     */
+    public Map<String, Object> toPineconeFilter() {
+        if (conditions.isEmpty()) {
+            return null;
+        }
+        List<Map<String, Object>> clauses = conditions.stream()
+            .map(condition -> Map.<String, Object>of(condition.field(), Map.of(condition.operator(), condition.operand())))
+            .toList();
+        return clauses.size() == 1 ? clauses.get(0) : Map.of("$and", clauses);
+    }
+
+    /**
+     * Parse the subset of Pinecone's filter syntax this class can express: field
+     * conditions with {@code $eq}, {@code $in} and range operators, the scalar and list
+     * shorthands for them, and {@code $and}.
+     *
+     * @throws IllegalArgumentException for unsupported operators such as {@code $or}
+     */
+    public static MemoryFilter fromMap(Map<String, ?> filter) {
+        MemoryFilter parsed = none();
+        if (filter == null) {
+            return parsed;
+        }
+        for (Map.Entry<String, ?> entry : filter.entrySet()) {
+            String field = entry.getKey();
+            Object value = entry.getValue();
+            if (field.equals("$and") && value instanceof List<?> clauses) {
+                for (Object clause : clauses) {
+                    if (!(clause instanceof Map<?, ?> map)) {
+                        throw new IllegalArgumentException("$and expects a list of filters");
+                    }
+                    for (Condition condition : fromMap((Map<String, ?>) map).conditions) {
+                        parsed = parsed.with(condition);
+                    }
+                }
+            } else if (field.startsWith("$")) {
+                throw new IllegalArgumentException("Unsupported filter operator: " + field);
+            } else if (value instanceof Map<?, ?> operators) {
+                for (Map.Entry<?, ?> operator : operators.entrySet()) {
+                    parsed = parsed.with(parseCondition(field, String.valueOf(operator.getKey()), operator.getValue()));
+                }
+            } else if (value instanceof Collection<?> values) {
+                parsed = parsed.in(field, values);
+            } else if (value != null) {
+                parsed = parsed.eq(field, value);
+            }
+        }
+        return parsed;
+    }
+
+    private static Condition parseCondition(String field, String operator, Object operand) {
+        if (!OPERATORS.contains(operator)) {
+            throw new IllegalArgumentException("Unsupported filter operator: " + operator);
+        }
+        if (operator.equals("$in") != operand instanceof Collection) {
+            throw new IllegalArgumentException(operator + " on " + field + " has an operand of the wrong type");
+        }
+        if (operator.equals("$in")) {
+            return new Condition(field, operator, List.copyOf((Collection<?>) operand));
+        }
+        if (!operator.equals("$eq") && !(operand instanceof Number)) {
+            throw new IllegalArgumentException(operator + " on " + field + " needs a number");
+        }
+        return new Condition(field, operator, operand);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof MemoryFilter filter && conditions.equals(filter.conditions);
+    }
+
+    @Override
+    public int hashCode() {
+        return conditions.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return isEmpty() ? "{}" : String.valueOf(toPineconeFilter());
+    }
+}
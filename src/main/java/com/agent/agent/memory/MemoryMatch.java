@@ -0,0 +1,26 @@
+package com.agent.agent.memory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A retrieved memory with its similarity score and, when requested, its embedding.
+ */
+public record MemoryMatch(String id, double score, String text, float[] values, Map<String, Object> metadata) {
+
+    static MemoryMatch from(Map<String, Object> match) {
+        Map<String, Object> metadata = match.get("metadata") instanceof Map<?, ?> map
+            ? (Map<String, Object>) map
+            : Collections.emptyMap();
+        float[] values = null;
+        if (match.get("values") instanceof List<?> list && !list.isEmpty()) {
+            values = new float[list.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = ((Number) list.get(i)).floatValue();
+            }
+        }
+        double score = match.get("score") instanceof Number number ? number.doubleValue() : 0;
+        return new MemoryMatch((String) match.get("id"), score, (String) metadata.get("text"), values, metadata);
+    }
+}
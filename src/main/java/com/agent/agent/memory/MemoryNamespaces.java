@@ -0,0 +1,88 @@
+package com.agent.agent.memory;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Maps memory kinds to Pinecone namespaces, so a query restricted to some types only
+ * scans those types' partitions of the index.
+ *
+ * A memory's kind is its {@code type} metadata, the same key filters narrow on, so a
+ * query pinning types finds every matching memory in those types' namespaces. Untyped
+ * memories and kinds missing from {@code memory.namespaces} live in the default
+ * namespace, which with the default empty mapping means everything does.
+ *
+ * Mapping a kind only routes writes made from then on; memories of that kind written
+ * before stay in the default namespace. So while {@code memory.namespaces.search-default}
+ * is on, a query pinning mapped kinds searches the default namespace as well. Once the
+ * older memories have been moved, by exporting a snapshot and importing it with
+ * rerouting, it can be turned off so those queries skip the default namespace.
+ */
+@Component
+public class MemoryNamespaces {
+    public static final String DEFAULT_NAMESPACE = "";
+
+    @Value("${memory.namespaces.search-default:true}")
+    private boolean searchDefault = true;
+
+    private final Map<String, String> namespaceByKind;
+    private final List<String> all;
+
+    public MemoryNamespaces(@Value("${memory.namespaces:}") List<String> mappings) {
+        this.namespaceByKind = parseMappings(mappings);
+        Set<String> namespaces = new LinkedHashSet<>();
+        namespaces.add(DEFAULT_NAMESPACE);
+        namespaces.addAll(namespaceByKind.values());
+        this.all = List.copyOf(namespaces);
+    }
+
+    private static Map<String, String> parseMappings(List<String> entries) {
+        Map<String, String> mappings = new HashMap<>();
+        for (String entry : entries) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length == 2) {
+                mappings.put(parts[0].trim(), parts[1].trim());
+            } else if (!entry.isBlank()) {
+                throw new IllegalArgumentException("Expected kind:namespace in memory.namespaces, got: " + entry);
+            }
+        }
+        return mappings;
+    }
+
+    public static String kindOf(Map<String, ?> metadata) {
+        Object kind = metadata.get("type");
+        return kind == null ? "" : String.valueOf(kind);
+    }
+
+    public String forKind(String kind) {
+        return namespaceByKind.getOrDefault(kind, DEFAULT_NAMESPACE);
+    }
+
+    public String forMetadata(Map<String, ?> metadata) {
+        return metadata == null ? DEFAULT_NAMESPACE : forKind(kindOf(metadata));
+    }
+
+    /**
+     * The namespaces a query with this filter has to search: only those of the types it
+     * pins, plus the default namespace unless memories written before the mapping have
+     * been moved out of it; otherwise all of them.
+     */
+    public List<String> forFilter(MemoryFilter filter) {
+        Set<Object> types = filter.allowedValues("type");
+        if (types == null) {
+            return all;
+        }
+        Set<String> namespaces = new LinkedHashSet<>();
+        types.forEach(type -> namespaces.add(forKind(String.valueOf(type))));
+        if (searchDefault && !namespaces.isEmpty()) {
+            namespaces.add(DEFAULT_NAMESPACE);
+        }
+        return List.copyOf(namespaces);
+    }
+
+    public List<String> all() {
+        return all;
+    }
+}
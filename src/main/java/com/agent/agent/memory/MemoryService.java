@@ -1,6 +1,7 @@
 package com.agent.agent.memory;
 
 import com.agent.service.EmbeddingService;
+import com.agent.service.RequestPriority;
 import org.springframework.stereotype.Service;
 import java.util.*;
 import java.security.MessageDigest;
@@ -12,24 +13,51 @@ import java.util.Base64;
 public class MemoryService {
     private final PineconeService pineconeService;
     private final EmbeddingService embeddingService;
+    private final MemoryAccessTracker accessTracker;
+    private final MemoryWriteAheadLog writeAheadLog;
+    private final MemoryNamespaces namespaces;
 
-    public MemoryService(PineconeService pineconeService, EmbeddingService embeddingService) {
+    public MemoryService(PineconeService pineconeService, EmbeddingService embeddingService,
+                         MemoryAccessTracker accessTracker, MemoryWriteAheadLog writeAheadLog,
+                         MemoryNamespaces namespaces) {
         this.pineconeService = pineconeService;
         this.embeddingService = embeddingService;
+        this.accessTracker = accessTracker;
+        this.writeAheadLog = writeAheadLog;
+        this.namespaces = namespaces;
     }
 
-    public void storeMemory(String information, Map<String, String> metadata) {
-        List<Float> embeddings = embeddingService.getEmbeddings(information);
+    public String storeMemory(String information, Map<String, String> metadata) {
+        return storeMemory(information, metadata, RequestPriority.MEMORY_WRITE);
+    }
+
+    /**
+     * @param priority scheduling class for the embedding call; interactive when a user waits on the write
+     * @return the memory's id, derived from its content
+     */
+    public String storeMemory(String information, Map<String, String> metadata, RequestPriority priority) {
+        List<Float> embeddings = embeddingService.getEmbeddings(information, priority);
         Map<String, Object> fullMetadata = new HashMap<>();
         fullMetadata.put("text", information);
-        fullMetadata.put("timestamp", new Date().toString());
+        // Epoch millis, so retrieval can filter on time ranges
+        fullMetadata.put("timestamp", System.currentTimeMillis());
         fullMetadata.put("source", "memory");
         fullMetadata.putAll(metadata);
 
         // Generate a unique ID based on the document's content
         String id = generateDocumentId(information);
 
-        pineconeService.upsertVector(id, embeddings, fullMetadata);
+        if (writeAheadLog.isEnabled()) {
+            // Acknowledged once durable locally; replayed to Pinecone in the background
+            writeAheadLog.appendUpsert(id, embeddings, fullMetadata);
+        } else {
+            Map<String, Object> vector = new HashMap<>();
+            vector.put("id", id);
+            vector.put("values", embeddings);
+            vector.put("metadata", fullMetadata);
+            pineconeService.upsertVectors(namespaces.forMetadata(fullMetadata), List.of(vector));
+        }
+        return id;
     }
 
     private String generateDocumentId(String text) {
@@ -42,16 +70,70 @@ public class MemoryService {
         }
     }
 
-    public List<String> retrieveSimilarMemories(String query, int limit) {
-        List<Float> queryEmbeddings = embeddingService.getEmbeddings(query);
+    public List<Float> embed(String text, RequestPriority priority) {
+        return embeddingService.getEmbeddings(text, priority);
+    }
+
+    /**
+     * Nearest memories to an already computed embedding, including their vectors so
+     * callers can re-rank them locally.
+     */
+    public List<MemoryMatch> retrieveMatches(List<Float> queryEmbedding, int topK, MemoryFilter filter) {
+        return queryMemories(queryEmbedding, topK, true, filter).stream()
+                .map(MemoryMatch::from)
+                .filter(match -> match.text() != null)
+                .toList();
+    }
+
+    /**
+     * Count memories that were actually used, for consolidation's eviction policy.
+     */
+    public void recordAccess(Collection<MemoryMatch> used) {
+        used.forEach(match -> accessTracker.recordAccess(match.id()));
+    }
+
+    /**
+     * Raw Pinecone matches for the filter, searching only the namespaces it can match and
+     * merging them by score.
+     */
+    public List<Map<String, Object>> queryMemories(List<Float> queryEmbedding, int topK, boolean includeValues,
+                                                   MemoryFilter filter) {
+        List<String> targets = namespaces.forFilter(filter);
+        if (targets.size() == 1) {
+            return pineconeService.queryVectors(queryEmbedding, topK, includeValues, filter, targets.get(0));
+        }
+        List<Map<String, Object>> merged = new ArrayList<>();
+        for (String namespace : targets) {
+            merged.addAll(pineconeService.queryVectors(queryEmbedding, topK, includeValues, filter, namespace));
+        }
+        merged.sort(Comparator.comparingDouble((Map<String, Object> match) ->
+            match.get("score") instanceof Number score ? score.doubleValue() : 0).reversed());
+        return merged.size() > topK ? merged.subList(0, topK) : merged;
+    }
+
+    public List<String> retrieveSimilarMemories(String query, int limit, RequestPriority priority) {
+        return retrieveSimilarMemories(query, limit, MemoryFilter.none(), priority);
+    }
+
+    public List<String> retrieveSimilarMemories(String query, int limit, MemoryFilter filter, RequestPriority priority) {
+        List<Float> queryEmbeddings = embeddingService.getEmbeddings(query, priority);
         
-        List<Map<String, Object>> matches = pineconeService.queryVectors(queryEmbeddings, limit);
+        List<Map<String, Object>> matches = queryMemories(queryEmbeddings, limit, false, filter);
+        matches.forEach(match -> accessTracker.recordAccess((String) match.get("id")));
         return matches.stream()
-                .map(match -> (String) match.get("metadata"))
+                .map(match -> match.get("metadata") instanceof Map<?, ?> metadata ? (String) metadata.get("text") : null)
+                .filter(Objects::nonNull)
                 .toList();
     }
 
     public void deleteMemory(String id) {
-        pineconeService.deleteVectors(Collections.singletonList(id));
+        if (writeAheadLog.isEnabled()) {
+            writeAheadLog.appendDelete(id);
+            return;
+        }
+        // The id alone doesn't tell which namespace holds it
+        for (String namespace : namespaces.all()) {
+            pineconeService.deleteVectors(namespace, Collections.singletonList(id));
+        }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,435 @@
+package com.agent.agent.memory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of the memory store.
+ *
+ * <pre>
+ * header   magic "MSNP", version, vector encoding, dimension, created-at millis
+ * block*   marker "BLK1", payload length, CRC32 of payload, payload
+ * trailer  marker "END1", block count, record count
+ * </pre>
+ *
+ * A block holds up to a few thousand records of one namespace, laid out by section so
+ * each decodes as one run: namespace, ids, then vectors (float32, or int8
+ * with one float scale per vector), then metadata column by column. A metadata column is
+ * its name, a value type, a presence bitmap and the present values. Blocks are
+ * checksummed individually, so a reader can verify a file in one streaming pass and
+ * export never holds more than one block in memory.
+ */
+final class MemorySnapshotFormat {
+    private static final int MAGIC = 0x4D534E50; // "MSNP"
+    private static final int VERSION = 1;
+    private static final int BLOCK_MARKER = 0x424C4B31; // "BLK1"
+    private static final int END_MARKER = 0x454E4431; // "END1"
+    private static final int MAX_BLOCK_BYTES = 512 * 1024 * 1024;
+
+    private static final byte TYPE_STRING = 0;
+    private static final byte TYPE_LONG = 1;
+    private static final byte TYPE_DOUBLE = 2;
+    private static final byte TYPE_BOOLEAN = 3;
+    private static final byte TYPE_JSON = 4;
+
+    enum Encoding {
+        FLOAT32, INT8
+    }
+
+    record Header(Encoding encoding, int dimension, long createdAt) {
+    }
+
+    record Record(String id, float[] values, Map<String, Object> metadata) {
+    }
+
+    record Block(String namespace, List<Record> records) {
+    }
+
+    private MemorySnapshotFormat() {
+    }
+
+    /**
+     * Streams blocks to an output. The header is written with the first block, once the
+     * vector dimension is known.
+     */
+    static final class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final Encoding encoding;
+        private final ObjectMapper objectMapper;
+        private Header header;
+        private int blocks;
+        private long records;
+
+        Writer(OutputStream out, Encoding encoding, ObjectMapper objectMapper) {
+            this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+            this.encoding = encoding;
+            this.objectMapper = objectMapper;
+        }
+
+        void write(String namespace, List<Record> block) throws IOException {
+            if (block.isEmpty()) {
+                return;
+            }
+            if (header == null) {
+                writeHeader(block.get(0).values().length);
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            encodeBlock(new DataOutputStream(bytes), namespace, block);
+            byte[] payload = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+
+            out.writeInt(BLOCK_MARKER);
+            out.writeInt(payload.length);
+            out.writeInt((int) crc.getValue());
+            out.write(payload);
+            blocks++;
+            records += block.size();
+        }
+
+        /**
+         * Write the trailer; a file without one is treated as truncated.
+         */
+        void finish() throws IOException {
+            if (header == null) {
+                writeHeader(0);
+            }
+            out.writeInt(END_MARKER);
+            out.writeInt(blocks);
+            out.writeLong(records);
+            out.flush();
+        }
+
+        long records() {
+            return records;
+        }
+
+        int blocks() {
+            return blocks;
+        }
+
+        private void writeHeader(int dimension) throws IOException {
+            header = new Header(encoding, dimension, System.currentTimeMillis());
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeByte(encoding.ordinal());
+            out.writeInt(dimension);
+            out.writeLong(header.createdAt());
+        }
+
+        private void encodeBlock(DataOutputStream payload, String namespace, List<Record> block) throws IOException {
+            writeString(payload, namespace);
+            payload.writeInt(block.size());
+            for (Record record : block) {
+                writeString(payload, record.id());
+            }
+
+            for (Record record : block) {
+                float[] values = record.values();
+                if (values.length != header.dimension()) {
+                    throw new IOException("Vector " + record.id() + " has dimension " + values.length
+                        + ", snapshot has " + header.dimension());
+                }
+                if (encoding == Encoding.FLOAT32) {
+                    for (float value : values) {
+                        payload.writeFloat(value);
+                    }
+                } else {
+                    writeQuantized(payload, values);
+                }
+            }
+
+            SortedSet<String> columns = new TreeSet<>();
+            block.forEach(record -> columns.addAll(record.metadata().keySet()));
+            payload.writeInt(columns.size());
+            for (String column : columns) {
+                writeColumn(payload, column, block);
+            }
+        }
+
+        /**
+         * Symmetric int8 quantization with a per-vector scale; cosine similarity is
+         * preserved to well within 1%.
+         */
+        private static void writeQuantized(DataOutputStream payload, float[] values) throws IOException {
+            float maxAbs = 0;
+            for (float value : values) {
+                maxAbs = Math.max(maxAbs, Math.abs(value));
+            }
+            float scale = maxAbs == 0 ? 1 : maxAbs / 127f;
+            payload.writeFloat(scale);
+            byte[] quantized = new byte[values.length];
+            for (int i = 0; i < values.length; i++) {
+                quantized[i] = (byte) Math.max(-127, Math.min(127, Math.round(values[i] / scale)));
+            }
+            payload.write(quantized);
+        }
+
+        private void writeColumn(DataOutputStream payload, String column, List<Record> block) throws IOException {
+            List<Object> values = new ArrayList<>(block.size());
+            block.forEach(record -> values.add(record.metadata().get(column)));
+            byte type = columnType(values);
+
+            writeString(payload, column);
+            payload.writeByte(type);
+            byte[] presence = new byte[(values.size() + 7) / 8];
+            for (int i = 0; i < values.size(); i++) {
+                if (values.get(i) != null) {
+                    presence[i / 8] |= (byte) (1 << (i % 8));
+                }
+            }
+            payload.write(presence);
+
+            for (Object value : values) {
+                if (value == null) {
+                    continue;
+                }
+                switch (type) {
+                    case TYPE_STRING -> writeString(payload, (String) value);
+                    case TYPE_LONG -> payload.writeLong(((Number) value).longValue());
+                    case TYPE_DOUBLE -> payload.writeDouble(((Number) value).doubleValue());
+                    case TYPE_BOOLEAN -> payload.writeBoolean((Boolean) value);
+                    default -> {
+                        byte[] json = objectMapper.writeValueAsBytes(value);
+                        payload.writeInt(json.length);
+                        payload.write(json);
+                    }
+                }
+            }
+        }
+
+        private static byte columnType(List<Object> values) {
+            boolean strings = true;
+            boolean longs = true;
+            boolean numbers = true;
+            boolean booleans = true;
+            for (Object value : values) {
+                if (value == null) {
+                    continue;
+                }
+                strings &= value instanceof String;
+                longs &= isIntegral(value);
+                numbers &= value instanceof Number;
+                booleans &= value instanceof Boolean;
+            }
+            if (strings) {
+                return TYPE_STRING;
+            }
+            if (longs) {
+                return TYPE_LONG;
+            }
+            if (numbers) {
+                return TYPE_DOUBLE;
+            }
+            return booleans ? TYPE_BOOLEAN : TYPE_JSON;
+        }
+
+        /**
+         * Pinecone returns every number as a float, so whole values such as epoch-millis
+         * timestamps are stored and restored as longs.
+         */
+        private static boolean isIntegral(Object value) {
+            if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                return true;
+            }
+            return value instanceof Number number && number.doubleValue() == Math.rint(number.doubleValue())
+                && Math.abs(number.doubleValue()) < (1L << 53);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads a snapshot block by block, verifying each checksum and, at the end, the trailer.
+     */
+    static final class Reader implements Closeable {
+        private final DataInputStream in;
+        private final ObjectMapper objectMapper;
+        private final Header header;
+        private int blocks;
+        private long records;
+        private boolean finished;
+
+        Reader(InputStream in, ObjectMapper objectMapper) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+            this.objectMapper = objectMapper;
+            try {
+                this.header = readHeader(this.in);
+            } catch (EOFException e) {
+                throw new IOException("Snapshot is truncated: incomplete header", e);
+            }
+        }
+
+        private static Header readHeader(DataInputStream in) throws IOException {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a memory snapshot");
+            }
+            int version = in.readUnsignedShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            int encoding = in.readUnsignedByte();
+            if (encoding >= Encoding.values().length) {
+                throw new IOException("Unknown vector encoding " + encoding);
+            }
+            return new Header(Encoding.values()[encoding], in.readInt(), in.readLong());
+        }
+
+        Header header() {
+            return header;
+        }
+
+        /**
+         * @param decode false to only verify the checksum, for a validation pass
+         * @return the next block (without records when not decoding), or null after the trailer
+         */
+        Block next(boolean decode) throws IOException {
+            if (finished) {
+                return null;
+            }
+            try {
+                return readBlock(decode);
+            } catch (EOFException e) {
+                throw new IOException("Snapshot is truncated after block " + blocks, e);
+            }
+        }
+
+        private Block readBlock(boolean decode) throws IOException {
+            int marker = in.readInt();
+            if (marker == END_MARKER) {
+                int expectedBlocks = in.readInt();
+                long expectedRecords = in.readLong();
+                if (expectedBlocks != blocks || expectedRecords != records) {
+                    throw new IOException(String.format("Snapshot trailer expects %d blocks / %d records, read %d / %d",
+                        expectedBlocks, expectedRecords, blocks, records));
+                }
+                finished = true;
+                return null;
+            }
+            if (marker != BLOCK_MARKER) {
+                throw new IOException("Corrupt snapshot: bad block marker after block " + blocks);
+            }
+            int length = in.readInt();
+            int expectedCrc = in.readInt();
+            if (length < 0 || length > MAX_BLOCK_BYTES) {
+                throw new IOException("Corrupt snapshot: block " + blocks + " has length " + length);
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != expectedCrc) {
+                throw new IOException("Corrupt snapshot: checksum mismatch in block " + blocks);
+            }
+            blocks++;
+
+            DataInputStream block = new DataInputStream(new ByteArrayInputStream(payload));
+            String namespace = readString(block);
+            int count = block.readInt();
+            records += count;
+            if (!decode) {
+                return new Block(namespace, Collections.emptyList());
+            }
+            return new Block(namespace, decodeRecords(block, count));
+        }
+
+        private List<Record> decodeRecords(DataInputStream block, int count) throws IOException {
+            String[] ids = new String[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = readString(block);
+            }
+
+            float[][] vectors = new float[count][header.dimension()];
+            byte[] quantized = header.encoding() == Encoding.INT8 ? new byte[header.dimension()] : null;
+            for (float[] vector : vectors) {
+                if (quantized == null) {
+                    for (int d = 0; d < vector.length; d++) {
+                        vector[d] = block.readFloat();
+                    }
+                } else {
+                    float scale = block.readFloat();
+                    block.readFully(quantized);
+                    for (int d = 0; d < vector.length; d++) {
+                        vector[d] = quantized[d] * scale;
+                    }
+                }
+            }
+
+            List<Map<String, Object>> metadata = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                metadata.add(new HashMap<>());
+            }
+            int columns = block.readInt();
+            for (int c = 0; c < columns; c++) {
+                readColumn(block, metadata);
+            }
+
+            List<Record> records = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                records.add(new Record(ids[i], vectors[i], metadata.get(i)));
+            }
+            return records;
+        }
+
+        private void readColumn(DataInputStream block, List<Map<String, Object>> metadata) throws IOException {
+            String column = readString(block);
+            byte type = block.readByte();
+            byte[] presence = new byte[(metadata.size() + 7) / 8];
+            block.readFully(presence);
+            for (int i = 0; i < metadata.size(); i++) {
+                if ((presence[i / 8] & (1 << (i % 8))) == 0) {
+                    continue;
+                }
+                Object value = switch (type) {
+                    case TYPE_STRING -> readString(block);
+                    case TYPE_LONG -> block.readLong();
+                    case TYPE_DOUBLE -> block.readDouble();
+                    case TYPE_BOOLEAN -> block.readBoolean();
+                    case TYPE_JSON -> {
+                        byte[] json = new byte[block.readInt()];
+                        block.readFully(json);
+                        yield objectMapper.readValue(json, Object.class);
+                    }
+                    default -> throw new IOException("Unknown metadata column type " + type);
+                };
+                metadata.get(i).put(column, value);
+            }
+        }
+
+        int blocks() {
+            return blocks;
+        }
+
+        long records() {
+            return records;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Corrupt snapshot: negative string length");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,307 @@
+package com.agent.agent.memory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Exports the memory store to a {@link MemorySnapshotFormat} file and bulk-loads it back,
+ * so a fresh or wiped index can be rebuilt without re-embedding anything.
+ *
+ * Export first drains the memory WAL and fails if Pinecone does not take every record,
+ * then pages through every namespace with list and fetch, one block at a time, into a
+ * temporary file that is moved into place when complete. Import verifies every checksum,
+ * and that the vectors fit an index of {@code pinecone.index.dimension}, before writing, then upserts in batches of {@code memory.snapshot.upsert-batch-size}
+ * with up to {@code memory.snapshot.import-parallelism} requests in flight. Snapshot
+ * files live in {@code memory.snapshot.dir} and are addressed by name only.
+ */
+@Service
+public class MemorySnapshotService {
+    private static final Logger logger = LoggerFactory.getLogger(MemorySnapshotService.class);
+    private static final int LIST_PAGE_SIZE = 100;
+    private static final int FETCH_BATCH_SIZE = 100;
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]{0,127}");
+
+    @Value("${memory.snapshot.dir:data/memory-snapshots}")
+    private String directory;
+
+    @Value("${memory.snapshot.encoding:float32}")
+    private String defaultEncoding;
+
+    @Value("${memory.snapshot.block-size:1000}")
+    private int blockSize;
+
+    @Value("${memory.snapshot.upsert-batch-size:100}")
+    private int upsertBatchSize;
+
+    @Value("${memory.snapshot.import-parallelism:4}")
+    private int importParallelism;
+
+    @Value("${pinecone.index.dimension:1024}")
+    private int indexDimension;
+
+    private final PineconeService pineconeService;
+    private final MemoryNamespaces namespaces;
+    private final MemoryWriteAheadLog writeAheadLog;
+    private final ObjectMapper objectMapper;
+
+    public MemorySnapshotService(PineconeService pineconeService, MemoryNamespaces namespaces,
+                                 MemoryWriteAheadLog writeAheadLog, ObjectMapper objectMapper) {
+        this.pineconeService = pineconeService;
+        this.namespaces = namespaces;
+        this.writeAheadLog = writeAheadLog;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Write every stored memory to the named snapshot, replacing it if it exists.
+     *
+     * @param encoding "float32" or "int8"; null for {@code memory.snapshot.encoding}
+     */
+    public synchronized Map<String, Object> export(String name, String encoding) {
+        long started = System.currentTimeMillis();
+        Path target = resolve(name);
+        MemorySnapshotFormat.Encoding vectorEncoding = parseEncoding(encoding == null ? defaultEncoding : encoding);
+        // Flush acknowledged writes still in the WAL so the snapshot includes them
+        long pendingBytes = writeAheadLog.drain();
+        if (pendingBytes > 0) {
+            throw new IllegalStateException(String.format(
+                "Memory WAL still has %d bytes not written to Pinecone (%s); the snapshot would miss them",
+                pendingBytes, writeAheadLog.stats().get("lastReplayError")));
+        }
+
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(target.getParent());
+            long records;
+            int blocks;
+            try (MemorySnapshotFormat.Writer writer = new MemorySnapshotFormat.Writer(
+                    Files.newOutputStream(temp), vectorEncoding, objectMapper)) {
+                for (String namespace : namespaces.all()) {
+                    exportNamespace(writer, namespace);
+                }
+                writer.finish();
+                records = writer.records();
+                blocks = writer.blocks();
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            Map<String, Object> report = new HashMap<>();
+            report.put("snapshot", name);
+            report.put("encoding", vectorEncoding.name().toLowerCase());
+            report.put("records", records);
+            report.put("blocks", blocks);
+            report.put("bytes", Files.size(target));
+            report.put("durationMs", System.currentTimeMillis() - started);
+            logger.info("Exported memory snapshot: {}", report);
+            return report;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error exporting memory snapshot " + name, e);
+        } finally {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                logger.warn("Could not delete {}: {}", temp, e.getMessage());
+            }
+        }
+    }
+
+    private void exportNamespace(MemorySnapshotFormat.Writer writer, String namespace) throws IOException {
+        List<MemorySnapshotFormat.Record> block = new ArrayList<>(blockSize);
+        String token = null;
+        do {
+            PineconeService.VectorPage page = pineconeService.listVectorIds(namespace, token, LIST_PAGE_SIZE);
+            for (int from = 0; from < page.ids().size(); from += FETCH_BATCH_SIZE) {
+                List<String> batch = page.ids().subList(from, Math.min(from + FETCH_BATCH_SIZE, page.ids().size()));
+                for (Map.Entry<String, Map<String, Object>> vector : pineconeService.fetchVectors(namespace, batch).entrySet()) {
+                    block.add(toRecord(vector.getKey(), vector.getValue()));
+                    if (block.size() >= blockSize) {
+                        writer.write(namespace, block);
+                        block.clear();
+                    }
+                }
+            }
+            token = page.nextToken();
+        } while (token != null);
+        writer.write(namespace, block);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MemorySnapshotFormat.Record toRecord(String id, Map<String, Object> vector) {
+        List<Number> values = vector.get("values") instanceof List<?> list ? (List<Number>) list : List.of();
+        float[] floats = new float[values.size()];
+        for (int i = 0; i < floats.length; i++) {
+            floats[i] = values.get(i).floatValue();
+        }
+        Map<String, Object> metadata = vector.get("metadata") instanceof Map<?, ?> map
+            ? (Map<String, Object>) map
+            : Collections.emptyMap();
+        return new MemorySnapshotFormat.Record(id, floats, metadata);
+    }
+
+    /**
+     * Upsert every memory in the named snapshot into its original namespace. Existing
+     * memories with the same ids are overwritten; others are left alone.
+     *
+     * @param reroute instead put each memory in the namespace {@code memory.namespaces}
+     * maps its type to now, and once every upsert has succeeded delete the memories that
+     * moved from the namespace they were exported from. Exporting and then importing with
+     * rerouting moves memories written before a mapping was added.
+     */
+    public synchronized Map<String, Object> importSnapshot(String name, boolean reroute) {
+        long started = System.currentTimeMillis();
+        Path source = resolve(name);
+        if (!Files.isRegularFile(source)) {
+            throw new NoSuchElementException("No memory snapshot named " + name);
+        }
+
+        // A corrupt file, or one the index cannot take, is rejected before anything is written
+        MemorySnapshotFormat.Header header;
+        try (MemorySnapshotFormat.Reader reader = new MemorySnapshotFormat.Reader(Files.newInputStream(source), objectMapper)) {
+            header = reader.header();
+            // An empty export has no vectors to take the dimension from and records 0
+            if (header.dimension() != 0 && header.dimension() != indexDimension) {
+                throw new IllegalArgumentException(String.format(
+                    "Memory snapshot %s has dimension %d, the index expects %d", name, header.dimension(), indexDimension));
+            }
+            while (reader.next(false) != null) {
+                // checksum only
+            }
+            if (header.dimension() == 0 && reader.records() > 0) {
+                throw new IOException("dimension 0 with " + reader.records() + " records");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Invalid memory snapshot " + name + ": " + e.getMessage(), e);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(importParallelism);
+        Deque<Future<?>> inFlight = new ArrayDeque<>();
+        Map<String, List<String>> movedIdsByNamespace = new LinkedHashMap<>();
+        long records = 0;
+        int requests = 0;
+        try (MemorySnapshotFormat.Reader reader = new MemorySnapshotFormat.Reader(Files.newInputStream(source), objectMapper)) {
+            MemorySnapshotFormat.Block block;
+            while ((block = reader.next(true)) != null) {
+                List<MemorySnapshotFormat.Record> blockRecords = block.records();
+                Map<String, List<MemorySnapshotFormat.Record>> recordsByNamespace = new LinkedHashMap<>();
+                for (MemorySnapshotFormat.Record record : blockRecords) {
+                    String target = reroute ? namespaces.forMetadata(record.metadata()) : block.namespace();
+                    recordsByNamespace.computeIfAbsent(target, key -> new ArrayList<>()).add(record);
+                    if (!target.equals(block.namespace())) {
+                        movedIdsByNamespace.computeIfAbsent(block.namespace(), key -> new ArrayList<>()).add(record.id());
+                    }
+                }
+                for (Map.Entry<String, List<MemorySnapshotFormat.Record>> entry : recordsByNamespace.entrySet()) {
+                    String namespace = entry.getKey();
+                    List<MemorySnapshotFormat.Record> namespaceRecords = entry.getValue();
+                    for (int from = 0; from < namespaceRecords.size(); from += upsertBatchSize) {
+                        List<Map<String, Object>> vectors = toVectors(
+                            namespaceRecords.subList(from, Math.min(from + upsertBatchSize, namespaceRecords.size())));
+                        // Bound the decoded batches held in memory to a couple per worker
+                        while (inFlight.size() >= importParallelism * 2) {
+                            inFlight.poll().get();
+                        }
+                        inFlight.add(executor.submit(() -> pineconeService.upsertVectors(namespace, vectors)));
+                        requests++;
+                    }
+                }
+                records += blockRecords.size();
+            }
+            while (!inFlight.isEmpty()) {
+                inFlight.poll().get();
+            }
+            // Only now is every moved memory stored in its new namespace
+            for (Map.Entry<String, List<String>> moved : movedIdsByNamespace.entrySet()) {
+                List<String> ids = moved.getValue();
+                for (int from = 0; from < ids.size(); from += upsertBatchSize) {
+                    pineconeService.deleteVectors(moved.getKey(), ids.subList(from, Math.min(from + upsertBatchSize, ids.size())));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading memory snapshot " + name, e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error importing memory snapshot " + name + ": " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while importing memory snapshot " + name, e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Map<String, Object> report = new HashMap<>();
+        report.put("snapshot", name);
+        report.put("encoding", header.encoding().name().toLowerCase());
+        report.put("createdAt", header.createdAt());
+        report.put("records", records);
+        report.put("upsertRequests", requests);
+        report.put("rerouted", movedIdsByNamespace.values().stream().mapToLong(List::size).sum());
+        report.put("durationMs", System.currentTimeMillis() - started);
+        logger.info("Imported memory snapshot: {}", report);
+        return report;
+    }
+
+    private static List<Map<String, Object>> toVectors(List<MemorySnapshotFormat.Record> records) {
+        List<Map<String, Object>> vectors = new ArrayList<>(records.size());
+        for (MemorySnapshotFormat.Record record : records) {
+            List<Float> values = new ArrayList<>(record.values().length);
+            for (float value : record.values()) {
+                values.add(value);
+            }
+            Map<String, Object> vector = new HashMap<>();
+            vector.put("id", record.id());
+            vector.put("values", values);
+            vector.put("metadata", record.metadata());
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+
+    public List<Map<String, Object>> list() {
+        Path dir = Paths.get(directory);
+        if (!Files.isDirectory(dir)) {
+            return Collections.emptyList();
+        }
+        List<Map<String, Object>> snapshots = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path path : files.sorted().toList()) {
+                String name = path.getFileName().toString();
+                if (!Files.isRegularFile(path) || name.endsWith(".tmp")) {
+                    continue;
+                }
+                Map<String, Object> snapshot = new HashMap<>();
+                snapshot.put("name", name);
+                snapshot.put("bytes", Files.size(path));
+                snapshot.put("modified", Files.getLastModifiedTime(path).toMillis());
+                snapshots.add(snapshot);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error listing memory snapshots", e);
+        }
+        return snapshots;
+    }
+
+    private Path resolve(String name) {
+        if (name == null || !SNAPSHOT_NAME.matcher(name).matches() || name.endsWith(".tmp")) {
+            throw new IllegalArgumentException(
+                "Snapshot name must be 1-128 letters, digits, '.', '_' or '-', not starting with a separator");
+        }
+        return Paths.get(directory).toAbsolutePath().normalize().resolve(name);
+    }
+
+    private static MemorySnapshotFormat.Encoding parseEncoding(String encoding) {
+        try {
+            return MemorySnapshotFormat.Encoding.valueOf(encoding.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown snapshot encoding '" + encoding + "', expected float32 or int8");
+        }
+    }
+}
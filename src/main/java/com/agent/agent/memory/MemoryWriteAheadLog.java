@@ -0,0 +1,655 @@
+package com.agent.agent.memory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped log of memory mutations that sits between
+ * {@link MemoryService} and Pinecone.
+ *
+ * A write returns once its record is forced to the local segment file. A scheduled
+ * replayer reads records from the last checkpoint, sends them to Pinecone in batches
+ * (consecutive upserts and deletes are grouped, repeated upserts of one id coalesced)
+ * and advances the checkpoint after every successful call. A batch is limited by
+ * {@code memory.wal.replay.batch-size} records and by {@code memory.wal.replay.max-batch-bytes},
+ * an estimate of the request body, to stay under Pinecone's 2 MB request limit. Segments
+ * that lie entirely before the checkpoint are deleted. If Pinecone is down, records simply
+ * accumulate and are replayed once it is back, including across restarts.
+ *
+ * A record Pinecone rejects with a 4xx status (other than 408 and 429), such as one over
+ * the 40 KB metadata limit, would never succeed on retry. It is appended to the
+ * {@code quarantine.jsonl} file next to the segments, counted since startup in
+ * {@link #stats()} and skipped, so it does not hold back the records after it.
+ *
+ * Only writes made through {@link MemoryService} go through the log. Consolidation and
+ * snapshot import write to Pinecone directly: they are batch jobs that can simply be
+ * re-run, and only touch ids that are already stored or were exported from the index.
+ *
+ * Segment layout: an 8-byte header (magic, version) followed by frames of
+ * {@code [int length][int crc32][payload]}. A zero length marks the end of written data;
+ * a frame with a bad checksum is treated as a torn write and truncated on recovery.
+ * Without {@code memory.wal.fsync}, writes are forced to disk on segment rotation and
+ * on shutdown only.
+ */
+@Component
+public class MemoryWriteAheadLog {
+    private static final Logger logger = LoggerFactory.getLogger(MemoryWriteAheadLog.class);
+    private static final int MAGIC = 0x4D57414C; // "MWAL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int FRAME_HEADER_SIZE = 8;
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final byte OP_UPSERT = 1;
+    private static final byte OP_DELETE = 2;
+    private static final long MAX_RETRY_BACKOFF_MS = 60_000;
+    private static final String QUARANTINE_FILE = "quarantine.jsonl";
+    private static final int RECENT_QUARANTINED_IDS = 100;
+    /** Bytes a float takes in the JSON request beyond its 4 bytes in the log. */
+    private static final int JSON_BYTES_PER_VALUE = 8;
+
+    @Value("${memory.wal.enabled:true}")
+    private boolean enabled;
+
+    @Value("${memory.wal.dir:data/memory-wal}")
+    private String directory;
+
+    @Value("${memory.wal.segment-size-bytes:16777216}")
+    private int segmentSize;
+
+    @Value("${memory.wal.fsync:true}")
+    private boolean fsync;
+
+    @Value("${memory.wal.replay.batch-size:100}")
+    private int replayBatchSize;
+
+    @Value("${memory.wal.replay.max-batch-bytes:1500000}")
+    private long replayMaxBatchBytes;
+
+    private final PineconeService pineconeService;
+    private final ObjectMapper objectMapper;
+    private final MemoryNamespaces namespaces;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final Object replayLock = new Object();
+    private Path dir;
+    private Segment active;
+    private volatile Position checkpoint;
+    private volatile long lastReplayAt;
+    private volatile String lastReplayError;
+    private long retryBackoffMs;
+    private long nextReplayAt;
+    private long quarantined;
+    private final Deque<String> recentQuarantinedIds = new ArrayDeque<>();
+
+    public MemoryWriteAheadLog(PineconeService pineconeService, ObjectMapper objectMapper, MemoryNamespaces namespaces) {
+        this.pineconeService = pineconeService;
+        this.objectMapper = objectMapper;
+        this.namespaces = namespaces;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * A logged mutation. {@code values} and {@code metadata} are null for deletes.
+     */
+    public record Mutation(boolean delete, String id, List<Float> values, Map<String, Object> metadata) {
+    }
+
+    private record Position(long segment, int offset) {
+    }
+
+    private record Entry(Mutation mutation, Position end) {
+    }
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        dir = Paths.get(directory);
+        Files.createDirectories(dir);
+        checkpoint = readCheckpoint();
+
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path path : files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList()) {
+                long sequence = Long.parseLong(path.getFileName().toString().replace(SEGMENT_SUFFIX, ""));
+                if (sequence < checkpoint.segment()) {
+                    Files.delete(path);
+                    continue;
+                }
+                segments.put(sequence, Segment.open(path, sequence, segmentSize));
+            }
+        }
+        if (segments.isEmpty()) {
+            active = createSegment(Math.max(1, checkpoint.segment()));
+        } else {
+            active = segments.lastEntry().getValue();
+            active.truncateTail();
+        }
+        logger.info("Memory WAL opened at {} with {} segment(s), checkpoint {}", dir.toAbsolutePath(), segments.size(), checkpoint);
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        for (Segment segment : segments.values()) {
+            segment.force();
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    public void appendUpsert(String id, List<Float> values, Map<String, Object> metadata) {
+        append(new Mutation(false, id, values, metadata));
+    }
+
+    public void appendDelete(String id) {
+        append(new Mutation(true, id, null, null));
+    }
+
+    /**
+     * Append a mutation and return once it is durable on local disk.
+     */
+    public synchronized void append(Mutation mutation) {
+        if (!enabled) {
+            throw new IllegalStateException("Memory WAL is disabled");
+        }
+        byte[] payload = encode(mutation);
+        int frameSize = FRAME_HEADER_SIZE + payload.length;
+        if (frameSize > segmentSize - HEADER_SIZE) {
+            throw new IllegalArgumentException("WAL record of " + frameSize + " bytes exceeds segment size " + segmentSize);
+        }
+        try {
+            if (active.writePosition + frameSize > segmentSize) {
+                active.force();
+                active = createSegment(active.sequence + 1);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+
+            int position = active.writePosition;
+            ByteBuffer buffer = active.buffer.duplicate();
+            buffer.position(position);
+            buffer.putInt(payload.length);
+            buffer.putInt((int) crc.getValue());
+            buffer.put(payload);
+            if (fsync) {
+                active.buffer.force(position, frameSize);
+            }
+            active.writePosition = position + frameSize;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error appending to memory WAL", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${memory.wal.replay.interval-ms:1000}")
+    public void replay() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (replayLock) {
+            if (System.currentTimeMillis() < nextReplayAt) {
+                return;
+            }
+            try {
+                List<Entry> batch;
+                while (!(batch = readBatch(checkpoint, replayBatchSize, replayMaxBatchBytes)).isEmpty()) {
+                    apply(batch);
+                }
+                lastReplayError = null;
+                retryBackoffMs = 0;
+            } catch (Exception e) {
+                // Back off while the vector store is unavailable instead of retrying every tick
+                retryBackoffMs = Math.min(MAX_RETRY_BACKOFF_MS, Math.max(1000, retryBackoffMs * 2));
+                nextReplayAt = System.currentTimeMillis() + retryBackoffMs;
+                lastReplayError = e.getMessage();
+                logger.warn("Memory WAL replay stopped at {}, retrying in {} ms: {}", checkpoint, retryBackoffMs, e.getMessage());
+            }
+            lastReplayAt = System.currentTimeMillis();
+            compact();
+        }
+    }
+
+    /**
+     * Replay everything that has been logged, ignoring any retry backoff.
+     *
+     * @return bytes still waiting to be replayed, zero once Pinecone has every record
+     */
+    public long drain() {
+        if (!enabled) {
+            return 0;
+        }
+        synchronized (replayLock) {
+            nextReplayAt = 0;
+            replay();
+        }
+        return pendingBytes();
+    }
+
+    /**
+     * Send a batch to Pinecone as runs of consecutive upserts or deletes, checkpointing
+     * after each run so a failure never replays more than one run.
+     */
+    private void apply(List<Entry> batch) throws IOException {
+        int start = 0;
+        while (start < batch.size()) {
+            boolean delete = batch.get(start).mutation().delete();
+            int end = start;
+            while (end < batch.size() && batch.get(end).mutation().delete() == delete) {
+                end++;
+            }
+            List<Entry> run = batch.subList(start, end);
+            if (delete) {
+                Map<String, Mutation> deletes = new LinkedHashMap<>();
+                run.forEach(entry -> deletes.put(entry.mutation().id(), entry.mutation()));
+                // Deletes carry no metadata, so clear the id from every namespace
+                for (String namespace : namespaces.all()) {
+                    send(new ArrayList<>(deletes.values()), mutations ->
+                        pineconeService.deleteVectors(namespace, mutations.stream().map(Mutation::id).toList()));
+                }
+            } else {
+                Map<String, Map<String, Mutation>> upsertsByNamespace = new LinkedHashMap<>();
+                for (Entry entry : run) {
+                    upsertsByNamespace
+                        .computeIfAbsent(namespaces.forMetadata(entry.mutation().metadata()), key -> new LinkedHashMap<>())
+                        .put(entry.mutation().id(), entry.mutation());
+                }
+                upsertsByNamespace.forEach((namespace, upserts) -> send(new ArrayList<>(upserts.values()), mutations ->
+                    pineconeService.upsertVectors(namespace, mutations.stream().map(MemoryWriteAheadLog::toVector).toList())));
+            }
+            writeCheckpoint(run.get(run.size() - 1).end());
+            start = end;
+        }
+    }
+
+    /**
+     * Send the mutations in one call. If Pinecone rejects the request, send them one at a
+     * time and quarantine those it rejects on their own; any other failure propagates so
+     * the run is retried.
+     */
+    private void send(List<Mutation> mutations, Consumer<List<Mutation>> call) {
+        try {
+            call.accept(mutations);
+            return;
+        } catch (RuntimeException e) {
+            if (!isRejected(e)) {
+                throw e;
+            }
+            if (mutations.size() == 1) {
+                quarantine(mutations.get(0), e);
+                return;
+            }
+        }
+        for (Mutation mutation : mutations) {
+            try {
+                call.accept(List.of(mutation));
+            } catch (RuntimeException e) {
+                if (!isRejected(e)) {
+                    throw e;
+                }
+                quarantine(mutation, e);
+            }
+        }
+    }
+
+    /**
+     * Whether Pinecone refused the request itself, so resending it cannot succeed.
+     * Timeouts and rate limiting are 4xx too, but pass with time.
+     */
+    private static boolean isRejected(Throwable error) {
+        HttpClientErrorException rejection = rejection(error);
+        if (rejection == null) {
+            return false;
+        }
+        int status = rejection.getStatusCode().value();
+        return status != 408 && status != 429;
+    }
+
+    private static HttpClientErrorException rejection(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpClientErrorException rejection) {
+                return rejection;
+            }
+        }
+        return null;
+    }
+
+    private void quarantine(Mutation mutation, RuntimeException error) {
+        String reason = rejection(error).getMessage();
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("quarantinedAt", System.currentTimeMillis());
+        record.put("error", reason);
+        record.put("delete", mutation.delete());
+        record.put("id", mutation.id());
+        record.put("values", mutation.values());
+        record.put("metadata", mutation.metadata());
+        try {
+            Files.writeString(dir.resolve(QUARANTINE_FILE), objectMapper.writeValueAsString(record) + "\n",
+                StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error quarantining WAL record " + mutation.id(), e);
+        }
+        synchronized (recentQuarantinedIds) {
+            quarantined++;
+            recentQuarantinedIds.addLast(mutation.id());
+            if (recentQuarantinedIds.size() > RECENT_QUARANTINED_IDS) {
+                recentQuarantinedIds.removeFirst();
+            }
+        }
+        logger.error("Pinecone rejected WAL record {}, quarantined it in {}: {}", mutation.id(), QUARANTINE_FILE, reason);
+    }
+
+    private static Map<String, Object> toVector(Mutation mutation) {
+        Map<String, Object> vector = new HashMap<>();
+        vector.put("id", mutation.id());
+        vector.put("values", mutation.values());
+        vector.put("metadata", mutation.metadata());
+        return vector;
+    }
+
+    /**
+     * Read up to {@code limit} records, stopping early once they would make a request of
+     * more than {@code maxBytes}; the first record is always returned.
+     */
+    private List<Entry> readBatch(Position from, int limit, long maxBytes) {
+        List<Entry> entries = new ArrayList<>();
+        Segment segment;
+        int offset;
+        synchronized (this) {
+            segment = segments.get(from.segment());
+            if (segment == null) {
+                Map.Entry<Long, Segment> next = segments.ceilingEntry(from.segment());
+                if (next == null) {
+                    return entries;
+                }
+                segment = next.getValue();
+                offset = HEADER_SIZE;
+            } else {
+                offset = Math.max(from.offset(), HEADER_SIZE);
+            }
+        }
+
+        long bytes = 0;
+        while (entries.size() < limit) {
+            int end = segment.writePosition;
+            if (offset >= end) {
+                Segment next;
+                synchronized (this) {
+                    // Only move on once the writer has left this segment
+                    if (segment == active) {
+                        break;
+                    }
+                    Map.Entry<Long, Segment> higher = segments.higherEntry(segment.sequence);
+                    next = higher == null ? null : higher.getValue();
+                }
+                if (next == null) {
+                    break;
+                }
+                segment = next;
+                offset = HEADER_SIZE;
+                continue;
+            }
+            ByteBuffer buffer = segment.buffer.duplicate();
+            buffer.position(offset);
+            int length = buffer.getInt();
+            buffer.getInt(); // checksum, verified on recovery
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            Mutation mutation = decode(payload);
+            long requestBytes = length + (mutation.delete() ? 0 : (long) JSON_BYTES_PER_VALUE * mutation.values().size());
+            if (!entries.isEmpty() && bytes + requestBytes > maxBytes) {
+                break;
+            }
+            bytes += requestBytes;
+            offset += FRAME_HEADER_SIZE + length;
+            entries.add(new Entry(mutation, new Position(segment.sequence, offset)));
+        }
+        return entries;
+    }
+
+    /**
+     * Delete segments that were fully replayed.
+     */
+    private synchronized void compact() {
+        Position current = checkpoint;
+        Iterator<Map.Entry<Long, Segment>> iterator = segments.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Segment segment = iterator.next().getValue();
+            boolean replayed = segment.sequence < current.segment()
+                || (segment.sequence == current.segment() && current.offset() >= segment.writePosition);
+            if (segment == active || !replayed) {
+                break;
+            }
+            segment.close();
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                logger.warn("Could not delete replayed WAL segment {}: {}", segment.path, e.getMessage());
+            }
+            iterator.remove();
+        }
+    }
+
+    private Segment createSegment(long sequence) throws IOException {
+        Path path = dir.resolve(String.format("%020d%s", sequence, SEGMENT_SUFFIX));
+        Segment segment = Segment.create(path, sequence, segmentSize);
+        segments.put(sequence, segment);
+        return segment;
+    }
+
+    private Position readCheckpoint() throws IOException {
+        Path path = dir.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(path)) {
+            return new Position(0, HEADER_SIZE);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        return new Position(buffer.getLong(), buffer.getInt());
+    }
+
+    private void writeCheckpoint(Position position) throws IOException {
+        Path temp = dir.resolve(CHECKPOINT_FILE + ".tmp");
+        ByteBuffer buffer = ByteBuffer.allocate(12).putLong(position.segment()).putInt(position.offset());
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(buffer.flip());
+            channel.force(true);
+        }
+        Files.move(temp, dir.resolve(CHECKPOINT_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        checkpoint = position;
+    }
+
+    private byte[] encode(Mutation mutation) {
+        try {
+            byte[] id = mutation.id().getBytes(StandardCharsets.UTF_8);
+            if (mutation.delete()) {
+                return ByteBuffer.allocate(1 + 4 + id.length).put(OP_DELETE).putInt(id.length).put(id).array();
+            }
+            byte[] metadata = objectMapper.writeValueAsBytes(mutation.metadata());
+            List<Float> values = mutation.values();
+            ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + id.length + 4 + 4 * values.size() + 4 + metadata.length);
+            buffer.put(OP_UPSERT).putInt(id.length).put(id);
+            buffer.putInt(values.size());
+            values.forEach(buffer::putFloat);
+            buffer.putInt(metadata.length).put(metadata);
+            return buffer.array();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error encoding WAL record", e);
+        }
+    }
+
+    private Mutation decode(byte[] payload) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(payload);
+            byte op = buffer.get();
+            byte[] id = new byte[buffer.getInt()];
+            buffer.get(id);
+            if (op == OP_DELETE) {
+                return new Mutation(true, new String(id, StandardCharsets.UTF_8), null, null);
+            }
+            int dimension = buffer.getInt();
+            List<Float> values = new ArrayList<>(dimension);
+            for (int i = 0; i < dimension; i++) {
+                values.add(buffer.getFloat());
+            }
+            byte[] metadata = new byte[buffer.getInt()];
+            buffer.get(metadata);
+            return new Mutation(false, new String(id, StandardCharsets.UTF_8), values,
+                objectMapper.readValue(metadata, Map.class));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error decoding WAL record", e);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        if (!enabled) {
+            return stats;
+        }
+        synchronized (this) {
+            Position current = checkpoint;
+            stats.put("segments", segments.size());
+            stats.put("pendingBytes", pendingBytes());
+            stats.put("checkpointSegment", current.segment());
+            stats.put("checkpointOffset", current.offset());
+        }
+        stats.put("lastReplayAt", lastReplayAt);
+        stats.put("lastReplayError", lastReplayError);
+        synchronized (recentQuarantinedIds) {
+            stats.put("quarantined", quarantined);
+            stats.put("recentQuarantinedIds", new ArrayList<>(recentQuarantinedIds));
+        }
+        return stats;
+    }
+
+    private synchronized long pendingBytes() {
+        Position current = checkpoint;
+        long pendingBytes = 0;
+        for (Segment segment : segments.values()) {
+            int from = segment.sequence == current.segment() ? Math.max(current.offset(), HEADER_SIZE) : HEADER_SIZE;
+            if (segment.sequence >= current.segment()) {
+                pendingBytes += Math.max(0, segment.writePosition - from);
+            }
+        }
+        return pendingBytes;
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private final long sequence;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private volatile int writePosition;
+
+        private Segment(Path path, long sequence, FileChannel channel, MappedByteBuffer buffer, int writePosition) {
+            this.path = path;
+            this.sequence = sequence;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.writePosition = writePosition;
+        }
+
+        static Segment create(Path path, long sequence, int size) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(0, MAGIC).putInt(4, VERSION);
+            buffer.force(0, HEADER_SIZE);
+            channel.force(true);
+            return new Segment(path, sequence, channel, buffer, HEADER_SIZE);
+        }
+
+        static Segment open(Path path, long sequence, int defaultSize) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = Math.max(channel.size(), defaultSize);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                channel.close();
+                throw new IOException("Not a memory WAL segment: " + path);
+            }
+            return new Segment(path, sequence, channel, buffer, scan(buffer));
+        }
+
+        /**
+         * Find the end of the valid frames; everything after a torn or corrupt frame is ignored.
+         */
+        private static int scan(MappedByteBuffer buffer) {
+            int position = HEADER_SIZE;
+            CRC32 crc = new CRC32();
+            while (position + FRAME_HEADER_SIZE <= buffer.capacity()) {
+                int length = buffer.getInt(position);
+                if (length <= 0 || position + FRAME_HEADER_SIZE + length > buffer.capacity()) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                buffer.get(position + FRAME_HEADER_SIZE, payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                    break;
+                }
+                position += FRAME_HEADER_SIZE + length;
+            }
+            return position;
+        }
+
+        /**
+         * Zero the frames after the last valid one so a partially written frame cannot be
+         * mistaken for data once new frames are appended over it. Only the span those
+         * frames' length fields cover is cleared; a length that cannot be trusted clears
+         * the rest of the segment.
+         */
+        void truncateTail() {
+            int capacity = buffer.capacity();
+            int end = writePosition;
+            while (end + FRAME_HEADER_SIZE <= capacity) {
+                int length = buffer.getInt(end);
+                if (length == 0) {
+                    // Bytes of the header's checksum field may have landed without the length
+                    end += FRAME_HEADER_SIZE;
+                    break;
+                }
+                end = length < 0 || length > capacity - end - FRAME_HEADER_SIZE
+                    ? capacity
+                    : end + FRAME_HEADER_SIZE + length;
+            }
+            end = Math.min(end, capacity);
+            if (end > writePosition) {
+                buffer.put(writePosition, new byte[end - writePosition]);
+                buffer.force(writePosition, end - writePosition);
+            }
+        }
+
+        void force() {
+            buffer.force();
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("Error closing WAL segment {}: {}", path, e.getMessage());
+            }
+        }
+    }
+}
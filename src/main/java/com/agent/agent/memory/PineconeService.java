@@ -3,14 +3,16 @@ package com.agent.agent.memory;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.hc.client5.http.classic.methods.*;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.net.URIBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.stereotype.Service;
 import java.util.*;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
 @Service
@@ -28,6 +30,9 @@ public class PineconeService {
     
     @Value("${pinecone.api.url}")
     private String baseUrl;
+
+    @Value("${pinecone.host:}")
+    private String host;
     
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
@@ -35,10 +40,10 @@ public class PineconeService {
     private static final int VECTOR_DIMENSION = 1024; // Updated to match Pinecone index configuration
     private static final String INDEX_IDENTIFIER = "anki83u"; // Specific identifier for your index
 
-    public PineconeService(ObjectMapper objectMapper, RestTemplate restTemplate) {
+    public PineconeService(ObjectMapper objectMapper, RestTemplate restTemplate, CloseableHttpClient httpClient) {
         this.objectMapper = objectMapper;
         this.restTemplate = restTemplate;
-        this.httpClient = HttpClients.createDefault();
+        this.httpClient = httpClient;
         logger.info("PineconeService initialized with environment: {}, index: {}", environment, indexName);
         logger.debug("API Key (first 8 chars): {}", apiKey != null ? apiKey.substring(0, 8) + "..." : "null");
     }
@@ -52,6 +57,10 @@ public class PineconeService {
     }
 
     public String getBaseUrl() {
+        if (host != null && !host.isBlank()) {
+            // Explicit index host, e.g. from the Pinecone console or a local stand-in
+            return host;
+        }
         if (environment == null || indexName == null) {
             String error = "Pinecone environment and index name must be configured";
             logger.error(error);
@@ -67,6 +76,10 @@ public class PineconeService {
     }
 
     public void upsertVectors(List<Map<String, Object>> vectors) {
+        upsertVectors(MemoryNamespaces.DEFAULT_NAMESPACE, vectors);
+    }
+
+    public void upsertVectors(String namespace, List<Map<String, Object>> vectors) {
         try {
             if (apiKey == null) {
                 String error = "Pinecone API key must be configured";
@@ -83,6 +96,7 @@ public class PineconeService {
 
             Map<String, Object> payload = new HashMap<>();
             payload.put("vectors", vectors);
+            putNamespace(payload, namespace);
 
             String payloadJson = objectMapper.writeValueAsString(payload);
             logger.debug("Request payload: {}", payloadJson);
@@ -100,9 +114,7 @@ public class PineconeService {
                 logger.debug("Response body: {}", responseBody);
 
                 if (statusCode != 200) {
-                    String error = String.format("Pinecone API returned status code %d: %s", statusCode, responseBody);
-                    logger.error(error);
-                    throw new RuntimeException(error);
+                    throw statusError(statusCode, responseBody);
                 }
                 return null;
             });
@@ -115,6 +127,19 @@ public class PineconeService {
     }
 
     public List<Map<String, Object>> queryVectors(List<Float> vector, int topK) {
+        return queryVectors(vector, topK, false);
+    }
+
+    public List<Map<String, Object>> queryVectors(List<Float> vector, int topK, boolean includeValues) {
+        return queryVectors(vector, topK, includeValues, MemoryFilter.none(), MemoryNamespaces.DEFAULT_NAMESPACE);
+    }
+
+    /**
+     * Nearest neighbours within one namespace, restricted by a metadata filter that
+     * Pinecone applies during the search rather than after it.
+     */
+    public List<Map<String, Object>> queryVectors(List<Float> vector, int topK, boolean includeValues,
+                                                  MemoryFilter filter, String namespace) {
         try {
             if (apiKey == null) {
                 String error = "Pinecone API key must be configured";
@@ -133,6 +158,11 @@ public class PineconeService {
             payload.put("vector", vector);
             payload.put("topK", topK);
             payload.put("includeMetadata", true);
+            payload.put("includeValues", includeValues);
+            if (!filter.isEmpty()) {
+                payload.put("filter", filter.toPineconeFilter());
+            }
+            putNamespace(payload, namespace);
 
             String payloadJson = objectMapper.writeValueAsString(payload);
             logger.debug("Request payload: {}", payloadJson);
@@ -150,9 +180,7 @@ public class PineconeService {
                 logger.debug("Response body: {}", responseBody);
 
                 if (statusCode != 200) {
-                    String error = String.format("Pinecone API returned status code %d: %s", statusCode, responseBody);
-                    logger.error(error);
-                    throw new RuntimeException(error);
+                    throw statusError(statusCode, responseBody);
                 }
 
                 Map<String, Object> responseMap = objectMapper.readValue(responseBody, Map.class);
@@ -176,6 +204,10 @@ public class PineconeService {
     }
 
     public void deleteVectors(List<String> ids) {
+        deleteVectors(MemoryNamespaces.DEFAULT_NAMESPACE, ids);
+    }
+
+    public void deleteVectors(String namespace, List<String> ids) {
         try {
             if (apiKey == null) {
                 String error = "Pinecone API key must be configured";
@@ -192,6 +224,7 @@ public class PineconeService {
 
             Map<String, Object> payload = new HashMap<>();
             payload.put("ids", ids);
+            putNamespace(payload, namespace);
 
             String payloadJson = objectMapper.writeValueAsString(payload);
             logger.debug("Request payload: {}", payloadJson);
@@ -209,9 +242,7 @@ public class PineconeService {
                 logger.debug("Response body: {}", responseBody);
 
                 if (statusCode != 200) {
-                    String error = String.format("Pinecone API returned status code %d: %s", statusCode, responseBody);
-                    logger.error(error);
-                    throw new RuntimeException(error);
+                    throw statusError(statusCode, responseBody);
                 }
                 return null;
             });
@@ -223,6 +254,119 @@ public class PineconeService {
         }
     }
 
+    /**
+     * One page of vector ids from the list endpoint (serverless indexes only).
+     */
+    public record VectorPage(List<String> ids, String nextToken) {
+    }
+
+    public VectorPage listVectorIds(String namespace, String paginationToken, int limit) {
+        try {
+            URIBuilder uri = new URIBuilder(requireBaseUrl() + "/vectors/list")
+                .addParameter("limit", String.valueOf(limit));
+            if (!namespace.isEmpty()) {
+                uri.addParameter("namespace", namespace);
+            }
+            if (paginationToken != null) {
+                uri.addParameter("paginationToken", paginationToken);
+            }
+            logger.debug("Listing vector ids from URL: {}", uri);
+
+            Map<String, Object> responseMap = executeJson(new HttpGet(uri.build()));
+            List<String> ids = new ArrayList<>();
+            if (responseMap.get("vectors") instanceof List<?> vectors) {
+                for (Object vector : vectors) {
+                    if (vector instanceof Map<?, ?> entry && entry.get("id") instanceof String id) {
+                        ids.add(id);
+                    }
+                }
+            }
+            String next = null;
+            if (responseMap.get("pagination") instanceof Map<?, ?> pagination
+                    && pagination.get("next") instanceof String token) {
+                next = token;
+            }
+            return new VectorPage(ids, next);
+        } catch (Exception e) {
+            String error = "Error listing vectors from Pinecone: " + e.getMessage();
+            logger.error(error, e);
+            throw new RuntimeException(error, e);
+        }
+    }
+
+    /**
+     * Fetch vectors with their values and metadata, keyed by id. Ids that do not exist are
+     * absent from the result.
+     */
+    public Map<String, Map<String, Object>> fetchVectors(String namespace, List<String> ids) {
+        try {
+            URIBuilder uri = new URIBuilder(requireBaseUrl() + "/vectors/fetch");
+            ids.forEach(id -> uri.addParameter("ids", id));
+            if (!namespace.isEmpty()) {
+                uri.addParameter("namespace", namespace);
+            }
+            logger.debug("Fetching {} vectors", ids.size());
+
+            Map<String, Object> responseMap = executeJson(new HttpGet(uri.build()));
+            Map<String, Map<String, Object>> results = new LinkedHashMap<>();
+            if (responseMap.get("vectors") instanceof Map<?, ?> vectors) {
+                vectors.forEach((id, vector) -> {
+                    if (vector instanceof Map) {
+                        results.put((String) id, (Map<String, Object>) vector);
+                    }
+                });
+            }
+            return results;
+        } catch (Exception e) {
+            String error = "Error fetching vectors from Pinecone: " + e.getMessage();
+            logger.error(error, e);
+            throw new RuntimeException(error, e);
+        }
+    }
+
+    private static void putNamespace(Map<String, Object> payload, String namespace) {
+        // Omitted for the default namespace so single-namespace indexes see unchanged requests
+        if (namespace != null && !namespace.isEmpty()) {
+            payload.put("namespace", namespace);
+        }
+    }
+
+    private String requireBaseUrl() {
+        if (apiKey == null) {
+            String error = "Pinecone API key must be configured";
+            logger.error(error);
+            throw new IllegalStateException(error);
+        }
+        return getBaseUrl();
+    }
+
+    /**
+     * 4xx responses are raised as {@link HttpClientErrorException} so callers can tell a
+     * rejected request from an unavailable service.
+     */
+    private static RuntimeException statusError(int statusCode, String responseBody) {
+        String error = String.format("Pinecone API returned status code %d: %s", statusCode, responseBody);
+        logger.error(error);
+        if (statusCode >= 400 && statusCode < 500) {
+            return new HttpClientErrorException(HttpStatusCode.valueOf(statusCode), error);
+        }
+        return new RuntimeException(error);
+    }
+
+    private Map<String, Object> executeJson(HttpUriRequestBase request) throws Exception {
+        request.setHeader("Api-Key", apiKey);
+        return httpClient.execute(request, response -> {
+            int statusCode = response.getCode();
+            String responseBody = new String(response.getEntity().getContent().readAllBytes());
+            logger.debug("Response status: {}", statusCode);
+
+            if (statusCode != 200) {
+                throw statusError(statusCode, responseBody);
+            }
+            return responseBody.isBlank() ? Collections.emptyMap() : objectMapper.readValue(responseBody, Map.class);
+        });
+    }
+
     public void upsertVector(String id, List<Float> values, Map<String, Object> metadata) {
         Map<String, Object> vector = new HashMap<>();
         vector.put("id", id);
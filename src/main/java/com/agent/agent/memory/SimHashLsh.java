@@ -0,0 +1,230 @@
+package com.agent.agent.memory;
+
+import java.util.*;
+
+/**
+ * Random-hyperplane LSH for cosine similarity, used to cluster near-duplicates without
+ * comparing every pair.
+ *
+ * Each vector gets {@code tables × rows} signature bits. Vectors whose bits agree on every
+ * row of some table share that table's bucket, and only vectors sharing a bucket are
+ * compared. {@link #forWindow} grows the rows with the number of vectors, so unrelated
+ * vectors rarely share a bucket, and picks enough tables that a pair at the similarity
+ * threshold shares at least one with 99% probability. A bucket that is still too large to
+ * compare pairwise, such as hundreds of copies of one memory, is split by the bits of the
+ * other tables, and the parts are then linked through one member each; members that agree
+ * on every bit are compared against one representative per cluster found so far. Similar
+ * pairs go straight into a union-find, so nothing is kept per pair.
+ */
+class SimHashLsh {
+    static final int MAX_BUCKET_SIZE = 256;
+    private static final int MIN_ROWS = 8;
+    private static final int MAX_ROWS = 30;
+    private static final int MAX_TABLES = 64;
+    private static final double TARGET_RECALL = 0.99;
+
+    /**
+     * Exact check of a candidate pair, by index into the signatures.
+     */
+    interface Similarity {
+        boolean test(int i, int j);
+    }
+
+    private final int tables;
+    private final int rows;
+    private final int bits;
+    /** Hyperplane components by dimension, so a signature accumulates all bits in one pass. */
+    private final float[][] planesByDimension;
+
+    SimHashLsh(int dimension, int tables, int rows, long seed) {
+        if (tables < 1 || rows < 1 || rows > MAX_ROWS) {
+            throw new IllegalArgumentException("Need at least one table and 1-" + MAX_ROWS + " rows per table");
+        }
+        this.tables = tables;
+        this.rows = rows;
+        this.bits = tables * rows;
+        Random random = new Random(seed);
+        this.planesByDimension = new float[dimension][bits];
+        for (int bit = 0; bit < bits; bit++) {
+            for (int i = 0; i < dimension; i++) {
+                planesByDimension[i][bit] = (float) random.nextGaussian();
+            }
+        }
+    }
+
+    /**
+     * Size the tables for clustering {@code size} vectors at cosine {@code threshold}.
+     */
+    static SimHashLsh forWindow(int dimension, int size, double threshold, long seed) {
+        int log2Size = 64 - Long.numberOfLeadingZeros(Math.max(size, 2) - 1);
+        int rows = Math.max(MIN_ROWS, Math.min(MAX_ROWS, log2Size + 1));
+        // Each hyperplane separates two vectors with probability angle / pi
+        double bitAgreement = 1 - Math.acos(Math.max(-1, Math.min(1, threshold))) / Math.PI;
+        double tableAgreement = Math.pow(bitAgreement, rows);
+        int tables = tableAgreement >= 1 ? 1
+            : (int) Math.ceil(Math.log(1 - TARGET_RECALL) / Math.log(1 - tableAgreement));
+        return new SimHashLsh(dimension, Math.max(1, Math.min(MAX_TABLES, tables)), rows, seed);
+    }
+
+    int tables() {
+        return tables;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    long[] signature(float[] vector) {
+        float[] dots = new float[bits];
+        for (int i = 0; i < Math.min(vector.length, planesByDimension.length); i++) {
+            accumulate(dots, planesByDimension[i], vector[i]);
+        }
+        return signs(dots);
+    }
+
+    /**
+     * Signature of an int8-scaled vector; scaling does not change the signature.
+     */
+    long[] signature(byte[] vector) {
+        float[] dots = new float[bits];
+        for (int i = 0; i < Math.min(vector.length, planesByDimension.length); i++) {
+            accumulate(dots, planesByDimension[i], vector[i]);
+        }
+        return signs(dots);
+    }
+
+    private static void accumulate(float[] dots, float[] planes, float value) {
+        if (value != 0) {
+            for (int bit = 0; bit < dots.length; bit++) {
+                dots[bit] += planes[bit] * value;
+            }
+        }
+    }
+
+    private static long[] signs(float[] dots) {
+        long[] signature = new long[(dots.length + 63) / 64];
+        for (int bit = 0; bit < dots.length; bit++) {
+            if (dots[bit] >= 0) {
+                signature[bit >>> 6] |= 1L << bit;
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * Group vectors connected by similar pairs. {@code similar} is only asked about
+     * candidates that are not already in the same group.
+     *
+     * @return for each vector the index of its group's root; equal roots mean the same group
+     */
+    int[] cluster(long[][] signatures, Similarity similar) {
+        int[] parent = new int[signatures.length];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+        for (int table = 0; table < tables; table++) {
+            for (List<Integer> bucket : bucketBy(signatures, bucketOf(signatures), table)) {
+                if (bucket.size() >= 2) {
+                    compare(signatures, bucket, table, 1, similar, parent);
+                }
+            }
+        }
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = find(parent, i);
+        }
+        return parent;
+    }
+
+    private static List<Integer> bucketOf(long[][] signatures) {
+        List<Integer> all = new ArrayList<>(signatures.length);
+        for (int i = 0; i < signatures.length; i++) {
+            all.add(i);
+        }
+        return all;
+    }
+
+    private Collection<List<Integer>> bucketBy(long[][] signatures, List<Integer> members, int table) {
+        Map<Long, List<Integer>> buckets = new HashMap<>();
+        for (int i : members) {
+            buckets.computeIfAbsent(key(signatures[i], table), key -> new ArrayList<>(2)).add(i);
+        }
+        return buckets.values();
+    }
+
+    /**
+     * @param splits tables already used to narrow this bucket, counting the one that formed it
+     */
+    private void compare(long[][] signatures, List<Integer> bucket, int table, int splits, Similarity similar, int[] parent) {
+        if (bucket.size() <= MAX_BUCKET_SIZE) {
+            for (int a = 0; a < bucket.size(); a++) {
+                for (int b = a + 1; b < bucket.size(); b++) {
+                    union(parent, bucket.get(a), bucket.get(b), similar);
+                }
+            }
+        } else if (splits < tables) {
+            int next = (table + splits) % tables;
+            List<Integer> representatives = new ArrayList<>();
+            for (List<Integer> part : bucketBy(signatures, bucket, next)) {
+                if (part.size() >= 2) {
+                    compare(signatures, part, table, splits + 1, similar, parent);
+                }
+                representatives.add(part.get(0));
+            }
+            // The split separates near-duplicates that differ on those bits, so the parts are
+            // linked through one member each
+            if (representatives.size() >= 2) {
+                compare(signatures, representatives, table, splits + 1, similar, parent);
+            }
+        } else {
+            // Every bit agrees: join each member to the first group it is similar to
+            List<Integer> representatives = new ArrayList<>();
+            for (int member : bucket) {
+                boolean joined = false;
+                for (int representative : representatives) {
+                    if (union(parent, representative, member, similar)) {
+                        joined = true;
+                        break;
+                    }
+                }
+                if (!joined) {
+                    representatives.add(member);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return whether the two are now in the same group
+     */
+    private static boolean union(int[] parent, int i, int j, Similarity similar) {
+        int rootI = find(parent, i);
+        int rootJ = find(parent, j);
+        if (rootI == rootJ) {
+            return true;
+        }
+        if (!similar.test(i, j)) {
+            return false;
+        }
+        parent[rootI] = rootJ;
+        return true;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private long key(long[] signature, int table) {
+        int from = table * rows;
+        int word = from >>> 6;
+        int offset = from & 63;
+        long bits = signature[word] >>> offset;
+        if (offset + rows > 64) {
+            bits |= signature[word + 1] << (64 - offset);
+        }
+        return bits & ((1L << rows) - 1);
+    }
+}
@@ -0,0 +1,26 @@
+package com.agent.agent.memory;
+
+/**
+ * Similarity of embedding vectors, shared by the in-process searches over memories.
+ */
+public final class VectorMath {
+
+    private VectorMath() {
+    }
+
+    /**
+     * Cosine similarity over the common prefix of the two vectors; zero if either is all zeros.
+     */
+    public static double cosine(float[] a, float[] b) {
+        int length = Math.min(a.length, b.length);
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return normA == 0 || normB == 0 ? 0 : dot / (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+}
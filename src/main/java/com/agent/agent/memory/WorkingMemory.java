@@ -0,0 +1,215 @@
+package com.agent.agent.memory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-session working memory: a ring buffer of the most recent turns with their
+ * embeddings, searched in process so conversational follow-ups rarely need Pinecone.
+ *
+ * Sessions idle longer than {@code agent.session.idle-timeout-ms} are dropped, and the
+ * least recently used sessions are evicted whenever the session count or the estimated
+ * heap footprint goes over its cap. Nothing here is durable; turns are also stored as
+ * long-term memories, so losing a session only costs the local fast path.
+ */
+@Component
+public class WorkingMemory {
+    private static final Logger logger = LoggerFactory.getLogger(WorkingMemory.class);
+    /** Rough per-turn cost of the record, map and array headers. */
+    private static final int TURN_OVERHEAD_BYTES = 256;
+
+    @Value("${agent.session.max-turns:16}")
+    private int maxTurns;
+
+    @Value("${agent.session.max-sessions:1000}")
+    private int maxSessions;
+
+    @Value("${agent.session.max-memory-mb:64}")
+    private long maxMemoryMb;
+
+    @Value("${agent.session.idle-timeout-ms:1800000}")
+    private long idleTimeoutMs;
+
+    @Value("${agent.session.local-score-threshold:0.75}")
+    private double localScoreThreshold;
+
+    @Value("${agent.session.min-local-matches:1}")
+    private int minLocalMatches;
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicLong evictedSessions = new AtomicLong();
+    private final AtomicLong localLookups = new AtomicLong();
+    private final AtomicLong remoteLookups = new AtomicLong();
+
+    private static final class Session {
+        private final MemoryMatch[] turns;
+        private final long[] turnBytes;
+        private int next;
+        private int size;
+        private long bytes;
+        private volatile long lastAccess;
+
+        Session(int capacity) {
+            this.turns = new MemoryMatch[capacity];
+            this.turnBytes = new long[capacity];
+        }
+
+        /**
+         * @return the change in this session's estimated size
+         */
+        synchronized long add(MemoryMatch turn, long estimate) {
+            long delta = estimate - turnBytes[next];
+            turns[next] = turn;
+            turnBytes[next] = estimate;
+            next = (next + 1) % turns.length;
+            size = Math.min(size + 1, turns.length);
+            bytes += delta;
+            return delta;
+        }
+
+        synchronized List<MemoryMatch> turns() {
+            List<MemoryMatch> snapshot = new ArrayList<>(size);
+            for (int i = 1; i <= size; i++) {
+                snapshot.add(turns[(next - i + turns.length) % turns.length]);
+            }
+            return snapshot;
+        }
+
+        synchronized long bytes() {
+            return bytes;
+        }
+    }
+
+    /**
+     * Append a turn to the session, overwriting its oldest turn once the buffer is full.
+     */
+    public void record(String sessionId, MemoryMatch turn) {
+        long estimate = estimateBytes(turn);
+        sessions.compute(sessionId, (id, session) -> {
+            if (session == null) {
+                session = new Session(maxTurns);
+            }
+            totalBytes.addAndGet(session.add(turn, estimate));
+            session.lastAccess = System.currentTimeMillis();
+            return session;
+        });
+        enforceLimits(sessionId);
+    }
+
+    /**
+     * The session's turns that pass the filter, scored by cosine similarity to the query
+     * and sorted best first. Unknown sessions have no turns.
+     */
+    public List<MemoryMatch> search(String sessionId, List<Float> queryEmbedding, MemoryFilter filter) {
+        Session session = sessions.get(sessionId);
+        if (session == null) {
+            return Collections.emptyList();
+        }
+        session.lastAccess = System.currentTimeMillis();
+        List<MemoryMatch> turns = session.turns();
+        BitSet eligible = filter.select(turns.stream().map(MemoryMatch::metadata).toList());
+
+        float[] query = new float[queryEmbedding.size()];
+        for (int i = 0; i < query.length; i++) {
+            query[i] = queryEmbedding.get(i);
+        }
+        List<MemoryMatch> scored = new ArrayList<>(eligible.cardinality());
+        for (int i = eligible.nextSetBit(0); i >= 0; i = eligible.nextSetBit(i + 1)) {
+            MemoryMatch turn = turns.get(i);
+            scored.add(new MemoryMatch(turn.id(), VectorMath.cosine(query, turn.values()), turn.text(),
+                turn.values(), turn.metadata()));
+        }
+        scored.sort(Comparator.comparingDouble(MemoryMatch::score).reversed());
+        return scored;
+    }
+
+    /**
+     * Whether local matches are good enough to skip long-term retrieval, counted in the
+     * lookup statistics.
+     */
+    public boolean isSufficient(List<MemoryMatch> localMatches) {
+        long strong = localMatches.stream().filter(match -> match.score() >= localScoreThreshold).count();
+        boolean sufficient = localMatches.size() > 0 && strong >= minLocalMatches;
+        (sufficient ? localLookups : remoteLookups).incrementAndGet();
+        return sufficient;
+    }
+
+    @Scheduled(fixedDelayString = "${agent.session.sweep-interval-ms:60000}")
+    public void evictIdleSessions() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMs;
+        int evicted = 0;
+        for (Map.Entry<String, Session> entry : sessions.entrySet()) {
+            if (entry.getValue().lastAccess < cutoff && remove(entry.getKey(), entry.getValue())) {
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            logger.debug("Evicted {} idle sessions, {} remain", evicted, sessions.size());
+        }
+    }
+
+    /**
+     * Drop least recently used sessions, other than the one just written, until both
+     * caps hold.
+     */
+    private void enforceLimits(String currentSessionId) {
+        long maxBytes = maxMemoryMb * 1024 * 1024;
+        while (sessions.size() > maxSessions || totalBytes.get() > maxBytes) {
+            Map.Entry<String, Session> oldest = null;
+            for (Map.Entry<String, Session> entry : sessions.entrySet()) {
+                if (!entry.getKey().equals(currentSessionId)
+                        && (oldest == null || entry.getValue().lastAccess < oldest.getValue().lastAccess)) {
+                    oldest = entry;
+                }
+            }
+            if (oldest == null) {
+                return;
+            }
+            remove(oldest.getKey(), oldest.getValue());
+        }
+    }
+
+    private boolean remove(String sessionId, Session session) {
+        // Removing through compute serialises with record(), so the byte count stays exact
+        boolean[] removed = new boolean[1];
+        sessions.computeIfPresent(sessionId, (id, current) -> {
+            if (current != session) {
+                return current;
+            }
+            totalBytes.addAndGet(-current.bytes());
+            evictedSessions.incrementAndGet();
+            removed[0] = true;
+            return null;
+        });
+        return removed[0];
+    }
+
+    private static long estimateBytes(MemoryMatch turn) {
+        long bytes = TURN_OVERHEAD_BYTES + 2L * turn.text().length();
+        if (turn.values() != null) {
+            bytes += 4L * turn.values().length;
+        }
+        for (Object value : turn.metadata().values()) {
+            bytes += value instanceof String text ? 2L * text.length() : 16;
+        }
+        return bytes;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("sessions", sessions.size());
+        stats.put("estimatedBytes", totalBytes.get());
+        stats.put("evictedSessions", evictedSessions.get());
+        stats.put("localLookups", localLookups.get());
+        stats.put("remoteLookups", remoteLookups.get());
+        return stats;
+    }
+}
@@ -2,20 +2,28 @@ package com.agent.api.controllers;
 
 import com.agent.agent.core.Agent;
 import com.agent.agent.core.AgentState;
+import com.agent.agent.memory.BatchSearchService;
+import com.agent.agent.memory.MemoryConsolidationService;
+import com.agent.agent.memory.MemoryFilter;
+import com.agent.agent.memory.MemoryNamespaces;
+import com.agent.agent.memory.MemoryService;
+import com.agent.agent.memory.MemorySnapshotService;
 import com.agent.agent.memory.PineconeService;
 import com.agent.service.OllamaService;
+import com.agent.service.RequestPriority;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.ArrayList;
 import java.util.UUID;
 import java.util.Collections;
-import java.util.Date;
 import java.util.Arrays;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,6 +31,8 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/agent")
@@ -30,18 +40,34 @@ public class AgentController {
     private final Agent agent;
     private final PineconeService pineconeService;
     private final OllamaService ollamaService;
+    private final MemoryConsolidationService consolidationService;
+    private final MemoryService memoryService;
+    private final MemoryNamespaces namespaces;
+    private final BatchSearchService batchSearchService;
+    private final MemorySnapshotService snapshotService;
     private static final Logger logger = LoggerFactory.getLogger(AgentController.class);
 
     @Autowired
-    public AgentController(Agent agent, PineconeService pineconeService, OllamaService ollamaService) {
+    public AgentController(Agent agent, PineconeService pineconeService, OllamaService ollamaService,
+                           MemoryConsolidationService consolidationService, MemoryService memoryService,
+                           MemoryNamespaces namespaces, BatchSearchService batchSearchService,
+                           MemorySnapshotService snapshotService) {
         this.agent = agent;
         this.pineconeService = pineconeService;
         this.ollamaService = ollamaService;
+        this.consolidationService = consolidationService;
+        this.memoryService = memoryService;
+        this.namespaces = namespaces;
+        this.batchSearchService = batchSearchService;
+        this.snapshotService = snapshotService;
     }
 
     @PostMapping("/task")
-    public CompletableFuture<ResponseEntity<String>> processTask(@RequestBody String task) {
-        return agent.processTask(task)
+    public CompletableFuture<ResponseEntity<String>> processTask(@RequestBody String task,
+                                                                 @RequestHeader(value = "X-Session-Id", required = false) String sessionHeader,
+                                                                 @RequestParam(value = "sessionId", required = false) String sessionParam) {
+        String sessionId = sessionHeader != null ? sessionHeader : sessionParam;
+        return agent.processTask(task, sessionId)
             .thenApply(ResponseEntity::ok)
             .exceptionally(e -> ResponseEntity.internalServerError().body("Error processing task: " + e.getMessage()));
     }
@@ -57,6 +83,123 @@ public class AgentController {
         return ResponseEntity.ok().build();
     }
 
+    @PostMapping("/memory/consolidate")
+    public ResponseEntity<Map<String, Object>> consolidateMemory() {
+        try {
+            return ResponseEntity.ok(consolidationService.consolidate());
+        } catch (Exception e) {
+            logger.error("Error consolidating memory: {}", e.getMessage());
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", "Error consolidating memory: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(error);
+        }
+    }
+
+    @GetMapping("/memory/snapshots")
+    public ResponseEntity<List<Map<String, Object>>> listSnapshots() {
+        return ResponseEntity.ok(snapshotService.list());
+    }
+
+    /**
+     * Export the memory store to a snapshot. Body: {@code {"name": "...", "encoding": "int8"}},
+     * where the encoding is optional.
+     */
+    @PostMapping("/memory/snapshots/export")
+    public ResponseEntity<Map<String, Object>> exportSnapshot(@RequestBody Map<String, String> request) {
+        return snapshotResponse("exporting", () -> snapshotService.export(request.get("name"), request.get("encoding")));
+    }
+
+    /**
+     * Load a snapshot back into the vector store. Body: {@code {"name": "...", "reroute": true}},
+     * where the optional reroute moves memories to the namespaces their types map to now.
+     */
+    @PostMapping("/memory/snapshots/import")
+    public ResponseEntity<Map<String, Object>> importSnapshot(@RequestBody Map<String, String> request) {
+        return snapshotResponse("importing", () ->
+            snapshotService.importSnapshot(request.get("name"), Boolean.parseBoolean(request.get("reroute"))));
+    }
+
+    private ResponseEntity<Map<String, Object>> snapshotResponse(String action, Supplier<Map<String, Object>> call) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("status", "error");
+        try {
+            return ResponseEntity.ok(call.get());
+        } catch (IllegalArgumentException e) {
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        } catch (NoSuchElementException e) {
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+        } catch (Exception e) {
+            logger.error("Error {} memory snapshot: {}", action, e.getMessage());
+            error.put("message", "Error " + action + " memory snapshot: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(error);
+        }
+    }
+
+    /**
+     * Search many queries at once. Body: {@code {"queries": [...], "topK": 5, "filter": {...}}},
+     * where the optional filter uses Pinecone's metadata filter syntax. Results come back in
+     * query order, each with its own status.
+     */
+    @PostMapping("/search/batch")
+    public ResponseEntity<Map<String, Object>> batchSearch(@RequestBody Map<String, Object> request) {
+        Map<String, Object> response = new HashMap<>();
+        List<String> queries;
+        int topK;
+        MemoryFilter filter;
+        try {
+            if (!(request.get("queries") instanceof List<?> rawQueries) || rawQueries.isEmpty()) {
+                throw new IllegalArgumentException("'queries' must be a non-empty list");
+            }
+            queries = rawQueries.stream().map(String::valueOf).toList();
+            topK = request.get("topK") instanceof Number number ? number.intValue() : 5;
+            filter = MemoryFilter.fromMap((Map<String, Object>) request.get("filter"));
+        } catch (IllegalArgumentException | ClassCastException e) {
+            response.put("status", "error");
+            response.put("message", "Invalid batch search request: " + e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        try {
+            List<BatchSearchService.Result> results = batchSearchService.search(queries, topK, filter);
+            List<Map<String, Object>> entries = new ArrayList<>(results.size());
+            int failed = 0;
+            for (BatchSearchService.Result result : results) {
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("query", result.query());
+                if (result.succeeded()) {
+                    entry.put("status", "success");
+                    entry.put("matches", result.matches());
+                } else {
+                    entry.put("status", "error");
+                    entry.put("message", result.error());
+                    failed++;
+                }
+                entries.add(entry);
+            }
+            response.put("status", failed == 0 ? "success" : failed == results.size() ? "error" : "partial");
+            response.put("succeeded", results.size() - failed);
+            response.put("failed", failed);
+            response.put("results", entries);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (RejectedExecutionException e) {
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(response);
+        } catch (Exception e) {
+            logger.error("Error in batch search: {}", e.getMessage());
+            response.put("status", "error");
+            response.put("message", "Error in batch search: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
     @GetMapping("/test-pinecone")
     public ResponseEntity<?> testPineconeConnection() {
         try {
@@ -92,23 +235,25 @@ public class AgentController {
     public ResponseEntity<?> testEmbeddings(@RequestBody String text) {
         try {
             // 1. Generate embeddings using Ollama
-            List<Float> embeddings = ollamaService.getEmbeddings(text);
+            List<Float> embeddings = ollamaService.getEmbeddings(text, RequestPriority.INTERACTIVE);
             
             // 2. Create a vector with metadata
             Map<String, Object> vector = new HashMap<>();
             vector.put("id", UUID.randomUUID().toString());
             vector.put("values", embeddings);
-            vector.put("metadata", Map.of(
+            Map<String, Object> metadata = Map.of(
                 "text", text,
-                "timestamp", new Date().toString(),
-                "source", "test-embeddings"
-            ));
+                "timestamp", System.currentTimeMillis(),
+                "source", "test-embeddings",
+                "type", "test-embeddings"
+            );
+            vector.put("metadata", metadata);
 
             // 3. Store in Pinecone
-            pineconeService.upsertVectors(Collections.singletonList(vector));
+            pineconeService.upsertVectors(namespaces.forMetadata(metadata), Collections.singletonList(vector));
 
             // 4. Query back using the same embeddings
-            List<Map<String, Object>> results = pineconeService.queryVectors(embeddings, 5);
+            List<Map<String, Object>> results = memoryService.queryMemories(embeddings, 5, false, MemoryFilter.none());
 
             Map<String, Object> response = new HashMap<>();
             response.put("status", "success");
@@ -129,18 +274,26 @@ public class AgentController {
     }
 
     @GetMapping("/test-semantic-search")
-    public ResponseEntity<?> testSemanticSearch(@RequestParam String query) {
+    public ResponseEntity<?> testSemanticSearch(@RequestParam String query,
+                                                @RequestParam(required = false) List<String> type,
+                                                @RequestParam(required = false) Long since,
+                                                @RequestParam(required = false) Long until) {
         try {
             // 1. Generate embeddings for the query
-            List<Float> queryEmbeddings = ollamaService.getEmbeddings(query);
+            List<Float> queryEmbeddings = ollamaService.getEmbeddings(query, RequestPriority.INTERACTIVE);
             
-            // 2. Search in Pinecone
-            List<Map<String, Object>> results = pineconeService.queryVectors(queryEmbeddings, 5);
+            // 2. Search in Pinecone, restricted to the requested types and time range
+            MemoryFilter filter = MemoryFilter.none().storedBetween(since, until);
+            if (type != null && !type.isEmpty()) {
+                filter = filter.in("type", type);
+            }
+            List<Map<String, Object>> results = memoryService.queryMemories(queryEmbeddings, 5, false, filter);
 
             Map<String, Object> response = new HashMap<>();
             response.put("status", "success");
             response.put("message", "Semantic search completed");
             response.put("query", query);
+            response.put("filter", filter.toString());
             response.put("results", results);
 
             return ResponseEntity.ok(response);
@@ -165,11 +318,12 @@ public class AgentController {
         );
 
         for (String text : testTexts) {
-            List<Float> embeddings = ollamaService.getEmbeddings(text);
+            List<Float> embeddings = ollamaService.getEmbeddings(text, RequestPriority.INGESTION);
             Map<String, Object> metadata = new HashMap<>();
             metadata.put("text", text);
-            metadata.put("timestamp", new Date().toString());
+            metadata.put("timestamp", System.currentTimeMillis());
             metadata.put("source", "batch-test");
+            metadata.put("type", "batch-test");
 
             // Generate a unique ID based on the document's content
             String id = generateDocumentId(text);
@@ -180,7 +334,11 @@ public class AgentController {
             document.put("embedding_dimensions", embeddings.size());
             documents.add(document);
 
-            pineconeService.upsertVector(id, embeddings, metadata);
+            Map<String, Object> vector = new HashMap<>();
+            vector.put("id", id);
+            vector.put("values", embeddings);
+            vector.put("metadata", metadata);
+            pineconeService.upsertVectors(namespaces.forMetadata(metadata), Collections.singletonList(vector));
         }
 
         Map<String, Object> response = new HashMap<>();
@@ -204,8 +362,8 @@ public class AgentController {
     @GetMapping("/test-batch-search")
     public ResponseEntity<Map<String, Object>> testBatchSearch(@RequestParam String query) {
         try {
-            List<Float> queryEmbeddings = ollamaService.getEmbeddings(query);
-            List<Map<String, Object>> results = pineconeService.queryVectors(queryEmbeddings, 5);
+            List<Float> queryEmbeddings = ollamaService.getEmbeddings(query, RequestPriority.INTERACTIVE);
+            List<Map<String, Object>> results = memoryService.queryMemories(queryEmbeddings, 5, false, MemoryFilter.none());
             
             Map<String, Object> response = new HashMap<>();
             response.put("status", "success");
@@ -1,12 +1,19 @@
 package com.agent.api.controllers;
 
+import com.agent.service.OllamaEndpointPool;
 import com.agent.service.OllamaService;
+import com.agent.service.RequestPriority;
+import com.agent.agent.memory.MemoryWriteAheadLog;
 import com.agent.agent.memory.PineconeService;
+import com.agent.agent.memory.WorkingMemory;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.pool.PoolStats;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -14,10 +21,21 @@ import java.util.Map;
 public class HealthController {
     private final OllamaService ollamaService;
     private final PineconeService pineconeService;
+    private final PoolingHttpClientConnectionManager httpConnectionManager;
+    private final List<OllamaEndpointPool> ollamaPools;
+    private final MemoryWriteAheadLog writeAheadLog;
+    private final WorkingMemory workingMemory;
 
-    public HealthController(OllamaService ollamaService, PineconeService pineconeService) {
+    public HealthController(OllamaService ollamaService, PineconeService pineconeService,
+                            PoolingHttpClientConnectionManager httpConnectionManager,
+                            List<OllamaEndpointPool> ollamaPools, MemoryWriteAheadLog writeAheadLog,
+                            WorkingMemory workingMemory) {
         this.ollamaService = ollamaService;
         this.pineconeService = pineconeService;
+        this.httpConnectionManager = httpConnectionManager;
+        this.ollamaPools = ollamaPools;
+        this.writeAheadLog = writeAheadLog;
+        this.workingMemory = workingMemory;
     }
 
     @GetMapping
@@ -28,7 +46,7 @@ public class HealthController {
         // Check Ollama
         try {
             String testPrompt = "Hello";
-            ollamaService.getEmbeddings(testPrompt);
+            ollamaService.getEmbeddings(testPrompt, RequestPriority.HEALTH);
             services.put("ollama", Map.of(
                 "status", "UP",
                 "model", ollamaService.getModelName()
@@ -59,4 +77,45 @@ public class HealthController {
         
         return ResponseEntity.ok(health);
     }
-} 
\ No newline at end of file
+
+    @GetMapping("/http-pool")
+    public ResponseEntity<Map<String, Object>> httpPoolStats() {
+        Map<String, Object> routes = new HashMap<>();
+        httpConnectionManager.getRoutes().forEach(route ->
+            routes.put(route.getTargetHost().toURI(), toMap(httpConnectionManager.getStats(route))));
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("total", toMap(httpConnectionManager.getTotalStats()));
+        stats.put("routes", routes);
+        return ResponseEntity.ok(stats);
+    }
+
+    @GetMapping("/ollama-endpoints")
+    public ResponseEntity<List<Map<String, Object>>> ollamaEndpoints() {
+        return ResponseEntity.ok(ollamaPools.stream().map(OllamaEndpointPool::snapshot).toList());
+    }
+
+    @GetMapping("/ollama-scheduler")
+    public ResponseEntity<List<Map<String, Object>>> ollamaScheduler() {
+        return ResponseEntity.ok(ollamaPools.stream().map(OllamaEndpointPool::schedulerSnapshot).toList());
+    }
+
+    @GetMapping("/memory-wal")
+    public ResponseEntity<Map<String, Object>> memoryWal() {
+        return ResponseEntity.ok(writeAheadLog.stats());
+    }
+
+    @GetMapping("/working-memory")
+    public ResponseEntity<Map<String, Object>> workingMemory() {
+        return ResponseEntity.ok(workingMemory.stats());
+    }
+
+    private Map<String, Object> toMap(PoolStats poolStats) {
+        return Map.of(
+            "leased", poolStats.getLeased(),
+            "pending", poolStats.getPending(),
+            "available", poolStats.getAvailable(),
+            "max", poolStats.getMax()
+        );
+    }
+}
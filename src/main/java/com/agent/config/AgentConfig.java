@@ -2,22 +2,34 @@ package com.agent.config;
 
 import com.agent.agent.core.Agent;
 import com.agent.agent.core.BaseAgent;
+import com.agent.agent.core.ContextAssembler;
+import com.agent.agent.memory.MemoryAccessTracker;
+import com.agent.agent.memory.MemoryNamespaces;
 import com.agent.agent.memory.MemoryService;
+import com.agent.agent.memory.MemoryWriteAheadLog;
 import com.agent.agent.memory.PineconeService;
+import com.agent.agent.memory.WorkingMemory;
 import com.agent.service.EmbeddingService;
+import com.agent.service.OllamaEndpointPool;
 import com.agent.service.OllamaService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.List;
+
 @Configuration
 public class AgentConfig {
     
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(CloseableHttpClient httpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
     }
 
     @Bean
@@ -26,28 +38,48 @@ public class AgentConfig {
     }
     
     @Bean
-    public PineconeService pineconeService(ObjectMapper objectMapper, RestTemplate restTemplate) {
-        return new PineconeService(objectMapper, restTemplate);
+    public PineconeService pineconeService(ObjectMapper objectMapper, RestTemplate restTemplate,
+                                           CloseableHttpClient httpClient) {
+        return new PineconeService(objectMapper, restTemplate, httpClient);
+    }
+
+    @Bean
+    public OllamaEndpointPool ollamaEmbeddingPool(RestTemplate restTemplate,
+                                                  @Value("${ollama.embedding.urls}") List<String> urls) {
+        return new OllamaEndpointPool("embedding", urls, restTemplate);
+    }
+
+    @Bean
+    public OllamaEndpointPool ollamaChatPool(RestTemplate restTemplate,
+                                             @Value("${ollama.chat.urls}") List<String> urls) {
+        return new OllamaEndpointPool("chat", urls, restTemplate);
     }
 
     @Bean
     @Primary
-    public EmbeddingService embeddingService(RestTemplate restTemplate, ObjectMapper objectMapper) {
-        return new OllamaService(restTemplate, objectMapper);
+    public EmbeddingService embeddingService(RestTemplate restTemplate, ObjectMapper objectMapper,
+                                             @Qualifier("ollamaEmbeddingPool") OllamaEndpointPool embeddingPool,
+                                             @Qualifier("ollamaChatPool") OllamaEndpointPool chatPool) {
+        return new OllamaService(restTemplate, objectMapper, embeddingPool, chatPool);
     }
 
     @Bean
-    public OllamaService ollamaService(RestTemplate restTemplate, ObjectMapper objectMapper) {
-        return new OllamaService(restTemplate, objectMapper);
+    public OllamaService ollamaService(RestTemplate restTemplate, ObjectMapper objectMapper,
+                                       @Qualifier("ollamaEmbeddingPool") OllamaEndpointPool embeddingPool,
+                                       @Qualifier("ollamaChatPool") OllamaEndpointPool chatPool) {
+        return new OllamaService(restTemplate, objectMapper, embeddingPool, chatPool);
     }
 
     @Bean
-    public MemoryService memoryService(PineconeService pineconeService, EmbeddingService embeddingService) {
-        return new MemoryService(pineconeService, embeddingService);
+    public MemoryService memoryService(PineconeService pineconeService, EmbeddingService embeddingService,
+                                       MemoryAccessTracker accessTracker, MemoryWriteAheadLog writeAheadLog,
+                                       MemoryNamespaces namespaces) {
+        return new MemoryService(pineconeService, embeddingService, accessTracker, writeAheadLog, namespaces);
     }
 
     @Bean
-    public Agent agent(MemoryService memoryService, OllamaService ollamaService) {
-        return new BaseAgent(memoryService, ollamaService);
+    public Agent agent(MemoryService memoryService, OllamaService ollamaService, ContextAssembler contextAssembler,
+                       WorkingMemory workingMemory) {
+        return new BaseAgent(memoryService, ollamaService, contextAssembler, workingMemory);
     }
 } 
\ No newline at end of file
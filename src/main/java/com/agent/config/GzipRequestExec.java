@@ -0,0 +1,37 @@
+package com.agent.config;
+
+import org.apache.hc.client5.http.classic.ExecChain;
+import org.apache.hc.client5.http.classic.ExecChainHandler;
+import org.apache.hc.client5.http.entity.GzipCompressingEntity;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpException;
+
+import java.io.IOException;
+
+/**
+ * Compresses request bodies of known length at or above a threshold. Bodies of unknown
+ * length (streamed by RestTemplate) and already encoded bodies are sent unchanged.
+ */
+class GzipRequestExec implements ExecChainHandler {
+    static final String NAME = "gzip-request";
+
+    private final long minSize;
+
+    GzipRequestExec(long minSize) {
+        this.minSize = minSize;
+    }
+
+    @Override
+    public ClassicHttpResponse execute(ClassicHttpRequest request, ExecChain.Scope scope, ExecChain chain)
+            throws IOException, HttpException {
+        HttpEntity entity = request.getEntity();
+        if (entity != null
+                && entity.getContentEncoding() == null
+                && entity.getContentLength() >= minSize) {
+            request.setEntity(new GzipCompressingEntity(entity));
+        }
+        return chain.proceed(request, scope);
+    }
+}
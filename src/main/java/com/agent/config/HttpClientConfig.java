@@ -0,0 +1,105 @@
+package com.agent.config;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.apache.hc.core5.pool.PoolReusePolicy;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Shared Apache HttpClient used by every outbound call (Ollama through RestTemplate,
+ * Pinecone directly). One pooled connection manager means keep-alive connections and
+ * TLS sessions are reused across requests instead of being set up per call.
+ */
+@Configuration
+public class HttpClientConfig {
+    private static final Logger logger = LoggerFactory.getLogger(HttpClientConfig.class);
+
+    @Value("${http.client.max-total:100}")
+    private int maxTotal;
+
+    @Value("${http.client.max-per-route:20}")
+    private int maxPerRoute;
+
+    @Value("${http.client.connect-timeout-ms:5000}")
+    private long connectTimeoutMs;
+
+    @Value("${http.client.response-timeout-ms:120000}")
+    private long responseTimeoutMs;
+
+    @Value("${http.client.pool-timeout-ms:10000}")
+    private long poolTimeoutMs;
+
+    @Value("${http.client.keep-alive-ms:30000}")
+    private long keepAliveMs;
+
+    @Value("${http.client.idle-evict-ms:30000}")
+    private long idleEvictMs;
+
+    @Value("${http.client.connection-ttl-ms:300000}")
+    private long connectionTtlMs;
+
+    @Value("${http.client.validate-after-inactivity-ms:2000}")
+    private long validateAfterInactivityMs;
+
+    @Value("${http.client.gzip-requests.enabled:false}")
+    private boolean gzipRequests;
+
+    @Value("${http.client.gzip-requests.min-size:16384}")
+    private long gzipMinSize;
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager httpConnectionManager() {
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+            .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+            .setSocketTimeout(Timeout.ofMilliseconds(responseTimeoutMs))
+            .setTimeToLive(TimeValue.ofMilliseconds(connectionTtlMs))
+            .setValidateAfterInactivity(TimeValue.ofMilliseconds(validateAfterInactivityMs))
+            .build();
+
+        logger.info("HTTP connection pool: maxTotal={}, maxPerRoute={}, connectTimeout={}ms, responseTimeout={}ms",
+            maxTotal, maxPerRoute, connectTimeoutMs, responseTimeoutMs);
+
+        return PoolingHttpClientConnectionManagerBuilder.create()
+            .setMaxConnTotal(maxTotal)
+            .setMaxConnPerRoute(maxPerRoute)
+            .setPoolConcurrencyPolicy(PoolConcurrencyPolicy.STRICT)
+            // LIFO keeps a small set of connections hot so idle ones can be evicted
+            .setConnPoolPolicy(PoolReusePolicy.LIFO)
+            .setDefaultConnectionConfig(connectionConfig)
+            .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient httpClient(PoolingHttpClientConnectionManager httpConnectionManager) {
+        RequestConfig requestConfig = RequestConfig.custom()
+            .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolTimeoutMs))
+            .setResponseTimeout(Timeout.ofMilliseconds(responseTimeoutMs))
+            // Fallback when the server does not send a Keep-Alive header
+            .setConnectionKeepAlive(TimeValue.ofMilliseconds(keepAliveMs))
+            .build();
+
+        var builder = HttpClients.custom()
+            .setConnectionManager(httpConnectionManager)
+            .setDefaultRequestConfig(requestConfig)
+            .evictExpiredConnections()
+            .evictIdleConnections(TimeValue.ofMilliseconds(idleEvictMs));
+
+        if (gzipRequests) {
+            // Response decompression is always on; request compression is opt-in because
+            // not every server accepts a gzip Content-Encoding on request bodies.
+            builder.addExecInterceptorFirst(GzipRequestExec.NAME, new GzipRequestExec(gzipMinSize));
+        }
+        return builder.build();
+    }
+}
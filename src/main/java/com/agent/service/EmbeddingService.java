@@ -3,7 +3,21 @@ package com.agent.service;
 import java.util.List;
 
 public interface EmbeddingService {
-    List<Float> getEmbeddings(String text);
+
+    /**
+     * Embed text, queued behind more urgent work when the backend is busy. Backends
+     * without scheduling ignore the priority.
+     */
+    List<Float> getEmbeddings(String text, RequestPriority priority);
+
+    /**
+     * Embed several texts, in input order. Implementations should override this when the
+     * backend can embed a batch in one call.
+     */
+    default List<List<Float>> getEmbeddingsBatch(List<String> texts, RequestPriority priority) {
+        return texts.stream().map(text -> getEmbeddings(text, priority)).toList();
+    }
+
     String getModelName();
     int getDimension();
 } 
\ No newline at end of file
@@ -0,0 +1,87 @@
+package com.agent.service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One Ollama host in an {@link OllamaEndpointPool}, with the routing state the pool
+ * needs: requests in flight, consecutive failures and which models are loaded.
+ */
+public class OllamaEndpoint {
+    private final String url;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long ejectedUntil;
+    private volatile Set<String> residentModels = Collections.emptySet();
+    private volatile long lastProbe;
+
+    public OllamaEndpoint(String url) {
+        this.url = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    public boolean isAvailable(long now) {
+        return now >= ejectedUntil;
+    }
+
+    public boolean isResident(String model) {
+        return residentModels.contains(model);
+    }
+
+    void begin() {
+        outstanding.incrementAndGet();
+    }
+
+    void end() {
+        outstanding.decrementAndGet();
+    }
+
+    void recordSuccess() {
+        consecutiveFailures.set(0);
+        ejectedUntil = 0;
+    }
+
+    /**
+     * @return true when this failure crossed the threshold and ejected the endpoint
+     */
+    boolean recordFailure(int maxFailures, long ejectionMs, long now) {
+        if (consecutiveFailures.incrementAndGet() >= maxFailures && isAvailable(now)) {
+            ejectedUntil = now + ejectionMs;
+            return true;
+        }
+        return false;
+    }
+
+    void updateResidentModels(Set<String> models, long now) {
+        residentModels = Set.copyOf(models);
+        lastProbe = now;
+    }
+
+    void addResidentModel(String model) {
+        Set<String> models = new HashSet<>(residentModels);
+        models.add(model);
+        residentModels = Set.copyOf(models);
+    }
+
+    Map<String, Object> snapshot(long now) {
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("url", url);
+        snapshot.put("available", isAvailable(now));
+        snapshot.put("outstanding", outstanding.get());
+        snapshot.put("consecutiveFailures", consecutiveFailures.get());
+        snapshot.put("residentModels", residentModels);
+        snapshot.put("lastProbe", lastProbe);
+        return snapshot;
+    }
+}
@@ -0,0 +1,330 @@
+package com.agent.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * A set of Ollama hosts serving one kind of traffic (embeddings or chat).
+ *
+ * Requests are routed with power-of-two-choices: two available endpoints are sampled and
+ * the one that already has the model loaded, then the one with fewer requests in flight,
+ * wins. Endpoints that fail repeatedly are ejected for a while; a periodic probe of
+ * {@code /api/ps} refreshes model residency and re-admits recovered hosts. Hosts that do
+ * not have the model loaded are warmed on a separate thread, so a slow model load never
+ * delays the probes, and a failed load does not count towards ejection.
+ *
+ * Requests first pass an {@link OllamaScheduler}, which bounds the pool's concurrency
+ * and admits queued requests by priority class. The bound is
+ * {@code ollama.scheduler.concurrency-per-endpoint} times the number of hosts that are
+ * not ejected, updated on ejection and on every probe, so the remaining hosts are not
+ * handed the share of an ejected one. It is per pool: a host shared by the embedding and
+ * chat pools counts towards both separately.
+ */
+public class OllamaEndpointPool {
+    private static final Logger logger = LoggerFactory.getLogger(OllamaEndpointPool.class);
+    private static final String PS_ENDPOINT = "/api/ps";
+    private static final String GENERATE_ENDPOINT = "/api/generate";
+
+    @Value("${ollama.model:llama2}")
+    private String model;
+
+    @Value("${ollama.keep-alive:5m}")
+    private String keepAlive;
+
+    @Value("${ollama.routing.max-attempts:2}")
+    private int maxAttempts;
+
+    @Value("${ollama.health.max-failures:3}")
+    private int maxFailures;
+
+    @Value("${ollama.health.ejection-ms:30000}")
+    private long ejectionMs;
+
+    @Value("${ollama.health.warm-models:true}")
+    private boolean warmModels;
+
+    @Value("${ollama.scheduler.policy:weighted}")
+    private String schedulerPolicy;
+
+    @Value("${ollama.scheduler.concurrency-per-endpoint:4}")
+    private int concurrencyPerEndpoint;
+
+    @Value("${ollama.scheduler.weights:interactive:8,health:4,memory-write:2,ingestion:1}")
+    private List<String> schedulerWeights;
+
+    @Value("${ollama.scheduler.class-limits:memory-write:2,ingestion:2}")
+    private List<String> schedulerLimits;
+
+    @Value("${ollama.scheduler.aging-ms:2000}")
+    private long schedulerAgingMs;
+
+    @Value("${ollama.scheduler.queue-timeout-ms:60000}")
+    private long schedulerQueueTimeoutMs;
+
+    private OllamaScheduler scheduler;
+
+    private final String name;
+    private final List<OllamaEndpoint> endpoints;
+    private final RestTemplate restTemplate;
+    private final Set<OllamaEndpoint> warming = ConcurrentHashMap.newKeySet();
+    private final ExecutorService warmExecutor;
+
+    public OllamaEndpointPool(String name, List<String> urls, RestTemplate restTemplate) {
+        this.name = name;
+        this.endpoints = urls.stream()
+            .map(String::trim)
+            .filter(url -> !url.isEmpty())
+            .distinct()
+            .map(OllamaEndpoint::new)
+            .toList();
+        this.restTemplate = restTemplate;
+        this.warmExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ollama-warm-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("Ollama endpoint pool '" + name + "' has no URLs configured");
+        }
+        logger.info("Ollama {} pool initialized with endpoints: {}", name,
+            endpoints.stream().map(OllamaEndpoint::getUrl).toList());
+    }
+
+    @PostConstruct
+    void initScheduler() {
+        Map<RequestPriority, Double> weights = new EnumMap<>(RequestPriority.class);
+        parsePriorityMap(schedulerWeights).forEach((priority, value) -> weights.put(priority, Double.parseDouble(value)));
+        Map<RequestPriority, Integer> limits = new EnumMap<>(RequestPriority.class);
+        parsePriorityMap(schedulerLimits).forEach((priority, value) -> limits.put(priority, Integer.parseInt(value)));
+        scheduler = new OllamaScheduler(name, OllamaScheduler.Policy.valueOf(schedulerPolicy.trim().toUpperCase()),
+            concurrencyPerEndpoint * endpoints.size(), weights, limits, schedulerAgingMs, schedulerQueueTimeoutMs);
+    }
+
+    private static Map<RequestPriority, String> parsePriorityMap(List<String> entries) {
+        Map<RequestPriority, String> values = new EnumMap<>(RequestPriority.class);
+        for (String entry : entries) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length == 2) {
+                values.put(RequestPriority.fromKey(parts[0].trim()), parts[1].trim());
+            } else if (!entry.isBlank()) {
+                throw new IllegalArgumentException("Expected class:value in ollama.scheduler settings, got: " + entry);
+            }
+        }
+        return values;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<OllamaEndpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * Once the scheduler admits the request, run a call against the best endpoint,
+     * failing over to another endpoint when the host is unreachable or answers with a
+     * server error.
+     *
+     * @param call receives the endpoint base URL and performs the request
+     */
+    public <T> T execute(RequestPriority priority, Function<String, T> call) {
+        return scheduler.run(priority, () -> route(call));
+    }
+
+    private <T> T route(Function<String, T> call) {
+        Set<OllamaEndpoint> tried = new HashSet<>();
+        RestClientException lastError = null;
+        while (tried.size() < maxAttempts) {
+            OllamaEndpoint endpoint = acquire(tried);
+            if (endpoint == null) {
+                break;
+            }
+            tried.add(endpoint);
+            boolean ejected = !endpoint.isAvailable(System.currentTimeMillis());
+            try {
+                T result = call.apply(endpoint.getUrl());
+                endpoint.recordSuccess();
+                if (ejected) {
+                    updateCapacity();
+                }
+                return result;
+            } catch (ResourceAccessException | HttpServerErrorException e) {
+                logger.warn("Ollama {} request to {} failed: {}", name, endpoint.getUrl(), e.getMessage());
+                recordFailure(endpoint);
+                lastError = e;
+            } finally {
+                endpoint.end();
+            }
+        }
+        if (lastError != null) {
+            throw lastError;
+        }
+        throw new IllegalStateException("No Ollama endpoint available in pool '" + name + "'");
+    }
+
+    OllamaEndpoint acquire(Set<OllamaEndpoint> exclude) {
+        long now = System.currentTimeMillis();
+        List<OllamaEndpoint> candidates = endpoints.stream()
+            .filter(endpoint -> !exclude.contains(endpoint) && endpoint.isAvailable(now))
+            .toList();
+        if (candidates.isEmpty()) {
+            // Every remaining host is ejected; trying one beats failing without a request
+            candidates = endpoints.stream()
+                .filter(endpoint -> !exclude.contains(endpoint))
+                .toList();
+        }
+        if (candidates.isEmpty()) {
+            return null;
+        }
+
+        OllamaEndpoint chosen;
+        if (candidates.size() == 1) {
+            chosen = candidates.get(0);
+        } else {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(candidates.size());
+            int second = random.nextInt(candidates.size() - 1);
+            if (second >= first) {
+                second++;
+            }
+            chosen = better(candidates.get(first), candidates.get(second));
+        }
+        chosen.begin();
+        return chosen;
+    }
+
+    private OllamaEndpoint better(OllamaEndpoint a, OllamaEndpoint b) {
+        String modelTag = modelTag();
+        boolean aResident = a.isResident(modelTag);
+        if (aResident != b.isResident(modelTag)) {
+            return aResident ? a : b;
+        }
+        return a.getOutstanding() <= b.getOutstanding() ? a : b;
+    }
+
+    private void recordFailure(OllamaEndpoint endpoint) {
+        if (endpoint.recordFailure(maxFailures, ejectionMs, System.currentTimeMillis())) {
+            logger.warn("Ejecting Ollama endpoint {} from {} pool for {} ms", endpoint.getUrl(), name, ejectionMs);
+            updateCapacity();
+        }
+    }
+
+    /**
+     * Size the scheduler for the endpoints currently admitted. With every endpoint ejected,
+     * requests still try one of them, so the pool keeps one endpoint's worth of capacity.
+     */
+    private synchronized void updateCapacity() {
+        long now = System.currentTimeMillis();
+        int available = (int) endpoints.stream().filter(endpoint -> endpoint.isAvailable(now)).count();
+        int capacity = concurrencyPerEndpoint * Math.max(1, available);
+        if (capacity != scheduler.getMaxConcurrency()) {
+            logger.info("Ollama {} pool has {} of {} endpoints available, allowing {} concurrent requests",
+                name, available, endpoints.size(), capacity);
+            scheduler.setMaxConcurrency(capacity);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ollama.health.interval-ms:10000}")
+    public void checkHealth() {
+        for (OllamaEndpoint endpoint : endpoints) {
+            try {
+                Map<String, Object> response = restTemplate.getForObject(endpoint.getUrl() + PS_ENDPOINT, Map.class);
+                endpoint.updateResidentModels(parseModels(response), System.currentTimeMillis());
+                endpoint.recordSuccess();
+            } catch (RestClientException e) {
+                logger.debug("Ollama {} health probe of {} failed: {}", name, endpoint.getUrl(), e.getMessage());
+                recordFailure(endpoint);
+                continue;
+            }
+            if (warmModels && !endpoint.isResident(modelTag())) {
+                scheduleWarm(endpoint);
+            }
+        }
+        // Also picks up ejections that expired without a probe in between
+        updateCapacity();
+    }
+
+    private void scheduleWarm(OllamaEndpoint endpoint) {
+        if (!warming.add(endpoint)) {
+            return;
+        }
+        try {
+            warmExecutor.execute(() -> {
+                try {
+                    warm(endpoint);
+                } finally {
+                    warming.remove(endpoint);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            warming.remove(endpoint);
+        }
+    }
+
+    private void warm(OllamaEndpoint endpoint) {
+        logger.info("Loading model {} on Ollama endpoint {}", model, endpoint.getUrl());
+        // A generate request without a prompt only loads the model and keeps it resident
+        Map<String, Object> request = new HashMap<>();
+        request.put("model", model);
+        request.put("keep_alive", keepAlive);
+        request.put("stream", false);
+        try {
+            restTemplate.postForObject(endpoint.getUrl() + GENERATE_ENDPOINT, request, Map.class);
+            endpoint.addResidentModel(modelTag());
+        } catch (RestClientException e) {
+            // The next probe retries; routing and ejection only depend on the probe itself
+            logger.warn("Loading model {} on Ollama endpoint {} failed: {}", model, endpoint.getUrl(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        warmExecutor.shutdownNow();
+    }
+
+    private Set<String> parseModels(Map<String, Object> response) {
+        Set<String> models = new HashSet<>();
+        if (response != null && response.get("models") instanceof List<?> list) {
+            for (Object item : list) {
+                if (item instanceof Map<?, ?> entry && entry.get("name") instanceof String modelName) {
+                    models.add(modelName);
+                }
+            }
+        }
+        return models;
+    }
+
+    private String modelTag() {
+        // Ollama reports loaded models with their tag, e.g. llama2:latest
+        return model.contains(":") ? model : model + ":latest";
+    }
+
+    public Map<String, Object> schedulerSnapshot() {
+        return scheduler.snapshot();
+    }
+
+    public Map<String, Object> snapshot() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("pool", name);
+        snapshot.put("endpoints", endpoints.stream().map(endpoint -> endpoint.snapshot(now)).toList());
+        return snapshot;
+    }
+}
@@ -0,0 +1,258 @@
+package com.agent.service;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Admission control for one Ollama pool: at most {@code maxConcurrency} requests run at
+ * once, and queued requests are admitted by priority class.
+ *
+ * Two policies are supported. {@link Policy#STRICT} always admits the most urgent class.
+ * {@link Policy#WEIGHTED} uses start-time fair queueing: each class receives admissions in
+ * proportion to its weight while it has work queued, and idle classes' shares go to the
+ * others. Both age waiting requests so background work cannot starve. Under strict
+ * admission a request is promoted one class for every {@code agingMs} it has waited;
+ * under weighted admission it is credited one of its class's turns (1 / weight of virtual
+ * time) for every {@code agingMs}. Either way a class never has more requests in flight
+ * than its limit, which keeps headroom for interactive requests since a running
+ * generation cannot be preempted.
+ *
+ * The pool lowers and raises {@code maxConcurrency} as its hosts are ejected and
+ * re-admitted; requests already running when it drops finish normally.
+ *
+ * Limits apply per scheduler, and each {@link OllamaEndpointPool} has its own. A host
+ * listed in both the embedding and the chat pool can therefore run the per-endpoint
+ * concurrency of each pool at the same time.
+ */
+public class OllamaScheduler {
+
+    public enum Policy {
+        STRICT, WEIGHTED
+    }
+
+    private final String name;
+    private final Policy policy;
+    private int maxConcurrency;
+    private final long agingMs;
+    private final long queueTimeoutMs;
+    private final Map<RequestPriority, ClassState> classes = new EnumMap<>(RequestPriority.class);
+    private int inFlight;
+    private double virtualTime;
+
+    private static final class Waiter {
+        private final long enqueuedAt;
+        private boolean admitted;
+
+        Waiter(long enqueuedAt) {
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private static final class ClassState {
+        private final double weight;
+        private final int limit;
+        private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+        private double finishTime;
+        private int inFlight;
+        private long admitted;
+        private long timedOut;
+        private long totalWaitMs;
+        private long maxWaitMs;
+
+        ClassState(double weight, int limit) {
+            this.weight = weight;
+            this.limit = limit;
+        }
+    }
+
+    /**
+     * @param weights share of admissions per class under {@link Policy#WEIGHTED}; missing classes get 1
+     * @param limits maximum requests in flight per class; missing classes are only bound by {@code maxConcurrency}
+     */
+    public OllamaScheduler(String name, Policy policy, int maxConcurrency, Map<RequestPriority, Double> weights,
+                           Map<RequestPriority, Integer> limits, long agingMs, long queueTimeoutMs) {
+        requireConcurrency(maxConcurrency);
+        this.name = name;
+        this.policy = policy;
+        this.maxConcurrency = maxConcurrency;
+        this.agingMs = agingMs;
+        this.queueTimeoutMs = queueTimeoutMs;
+        for (RequestPriority priority : RequestPriority.values()) {
+            classes.put(priority, new ClassState(
+                weights.getOrDefault(priority, 1.0),
+                limits.containsKey(priority) ? Math.max(1, limits.get(priority)) : Integer.MAX_VALUE));
+        }
+    }
+
+    private static void requireConcurrency(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Ollama scheduler concurrency must be at least 1");
+        }
+    }
+
+    /**
+     * Change how many requests may run at once, admitting queued requests if it grew.
+     */
+    public synchronized void setMaxConcurrency(int maxConcurrency) {
+        requireConcurrency(maxConcurrency);
+        this.maxConcurrency = maxConcurrency;
+        dispatch();
+    }
+
+    public synchronized int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Run the call once admitted, waiting in the priority's queue until then.
+     *
+     * @throws IllegalStateException when no slot frees up within the queue timeout
+     */
+    public <T> T run(RequestPriority priority, Supplier<T> call) {
+        acquire(priority);
+        try {
+            return call.get();
+        } finally {
+            release(priority);
+        }
+    }
+
+    private synchronized void acquire(RequestPriority priority) {
+        ClassState state = classes.get(priority);
+        long now = System.currentTimeMillis();
+        Waiter waiter = new Waiter(now);
+        state.queue.add(waiter);
+        dispatch();
+
+        long deadline = now + queueTimeoutMs;
+        try {
+            while (!waiter.admitted) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    state.queue.remove(waiter);
+                    state.timedOut++;
+                    throw new IllegalStateException(String.format(
+                        "Timed out after %d ms waiting for Ollama %s capacity (%s)", queueTimeoutMs, name, priority.getKey()));
+                }
+                wait(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (waiter.admitted) {
+                release(priority);
+            } else {
+                state.queue.remove(waiter);
+            }
+            throw new IllegalStateException("Interrupted while waiting for Ollama capacity", e);
+        }
+
+        long waited = System.currentTimeMillis() - waiter.enqueuedAt;
+        state.totalWaitMs += waited;
+        state.maxWaitMs = Math.max(state.maxWaitMs, waited);
+    }
+
+    private synchronized void release(RequestPriority priority) {
+        inFlight--;
+        classes.get(priority).inFlight--;
+        dispatch();
+    }
+
+    /**
+     * Admit queued requests while capacity lasts. Waiters are woken together; each
+     * checks its own flag.
+     */
+    private void dispatch() {
+        boolean admittedAny = false;
+        while (inFlight < maxConcurrency) {
+            RequestPriority next = policy == Policy.STRICT ? nextStrict() : nextWeighted();
+            if (next == null) {
+                break;
+            }
+            ClassState state = classes.get(next);
+            if (policy == Policy.WEIGHTED) {
+                double start = Math.max(virtualTime, state.finishTime);
+                state.finishTime = start + 1 / state.weight;
+                virtualTime = start;
+            }
+            state.queue.poll().admitted = true;
+            state.inFlight++;
+            state.admitted++;
+            inFlight++;
+            admittedAny = true;
+        }
+        if (admittedAny) {
+            notifyAll();
+        }
+    }
+
+    private RequestPriority nextStrict() {
+        long now = System.currentTimeMillis();
+        RequestPriority best = null;
+        long bestRank = Long.MAX_VALUE;
+        long bestEnqueuedAt = Long.MAX_VALUE;
+        for (Map.Entry<RequestPriority, ClassState> entry : classes.entrySet()) {
+            Waiter head = eligibleHead(entry.getValue());
+            if (head == null) {
+                continue;
+            }
+            long promotions = agingMs > 0 ? (now - head.enqueuedAt) / agingMs : 0;
+            // No class is promoted past the most urgent one, so an aged backlog there cannot
+            // keep other classes out; equal rank goes to whoever has waited longer
+            long rank = Math.max(0, entry.getKey().ordinal() - promotions);
+            if (rank < bestRank || (rank == bestRank && head.enqueuedAt < bestEnqueuedAt)) {
+                best = entry.getKey();
+                bestRank = rank;
+                bestEnqueuedAt = head.enqueuedAt;
+            }
+        }
+        return best;
+    }
+
+    private RequestPriority nextWeighted() {
+        long now = System.currentTimeMillis();
+        RequestPriority best = null;
+        double bestStart = Double.MAX_VALUE;
+        for (Map.Entry<RequestPriority, ClassState> entry : classes.entrySet()) {
+            ClassState state = entry.getValue();
+            Waiter head = eligibleHead(state);
+            if (head == null) {
+                continue;
+            }
+            long promotions = agingMs > 0 ? (now - head.enqueuedAt) / agingMs : 0;
+            // Aging only moves the class up for this choice; its finish times stay fair
+            double start = Math.max(virtualTime, state.finishTime) - promotions / state.weight;
+            if (start < bestStart) {
+                best = entry.getKey();
+                bestStart = start;
+            }
+        }
+        return best;
+    }
+
+    private static Waiter eligibleHead(ClassState state) {
+        return state.inFlight < state.limit ? state.queue.peek() : null;
+    }
+
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> perClass = new LinkedHashMap<>();
+        classes.forEach((priority, state) -> {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("queued", state.queue.size());
+            stats.put("inFlight", state.inFlight);
+            stats.put("limit", Math.min(state.limit, maxConcurrency));
+            stats.put("weight", state.weight);
+            stats.put("admitted", state.admitted);
+            stats.put("timedOut", state.timedOut);
+            stats.put("avgWaitMs", state.admitted == 0 ? 0 : state.totalWaitMs / state.admitted);
+            stats.put("maxWaitMs", state.maxWaitMs);
+            perClass.put(priority.getKey(), stats);
+        });
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("pool", name);
+        snapshot.put("policy", policy.name().toLowerCase());
+        snapshot.put("maxConcurrency", maxConcurrency);
+        snapshot.put("inFlight", inFlight);
+        snapshot.put("classes", perClass);
+        return snapshot;
+    }
+}
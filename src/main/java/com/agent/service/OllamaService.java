@@ -15,46 +15,54 @@ public class OllamaService implements EmbeddingService {
     private static final Logger logger = LoggerFactory.getLogger(OllamaService.class);
     private static final String OLLAMA_API_URL = "http://localhost:11434/api";
     private static final String EMBEDDINGS_ENDPOINT = "/api/embeddings";
-    private static final String CHAT_ENDPOINT = "/chat";
+    private static final String BATCH_EMBED_ENDPOINT = "/api/embed";
+    private static final String CHAT_ENDPOINT = "/api/chat";
     private static final int DIMENSION = 4096; // Default dimension for most Ollama models
     private static final int TARGET_DIMENSION = 1024; // Pinecone index dimension
     
     @Value("${ollama.model:llama2}")
     private String model;
     
-    @Value("${ollama.api.url}")
-    private String baseUrl;
+    @Value("${ollama.keep-alive:5m}")
+    private String keepAlive;
+
+    @Value("${ollama.embedding.batch-size:64}")
+    private int embeddingBatchSize;
     
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
+    private final OllamaEndpointPool embeddingPool;
+    private final OllamaEndpointPool chatPool;
 
-    public OllamaService(RestTemplate restTemplate, ObjectMapper objectMapper) {
+    public OllamaService(RestTemplate restTemplate, ObjectMapper objectMapper,
+                         OllamaEndpointPool embeddingPool, OllamaEndpointPool chatPool) {
         this.restTemplate = restTemplate;
         this.objectMapper = objectMapper;
+        this.embeddingPool = embeddingPool;
+        this.chatPool = chatPool;
         logger.info("OllamaService initialized with model: {}", model);
     }
 
     @Override
-    public List<Float> getEmbeddings(String text) {
+    public List<Float> getEmbeddings(String text, RequestPriority priority) {
         logger.debug("Getting embeddings for text of length: {}", text.length());
         Map<String, String> request = new HashMap<>();
         request.put("model", model);
         request.put("prompt", text);
+        request.put("keep_alive", keepAlive);
 
-        String url = baseUrl + EMBEDDINGS_ENDPOINT;
-        logger.debug("Ollama embeddings URL: {}", url);
         logger.debug("Ollama embeddings request: {}", request);
 
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
         HttpEntity<Map<String, String>> requestEntity = new HttpEntity<>(request, headers);
 
-        ResponseEntity<Map> response = restTemplate.exchange(
-            url,
+        ResponseEntity<Map> response = embeddingPool.execute(priority, baseUrl -> restTemplate.exchange(
+            baseUrl + EMBEDDINGS_ENDPOINT,
             HttpMethod.POST,
             requestEntity,
             Map.class
-        );
+        ));
 
         if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
             Object embeddingObj = response.getBody().get("embedding");
@@ -62,17 +70,7 @@ public class OllamaService implements EmbeddingService {
                 logger.error("No 'embedding' key in Ollama response: {}", response.getBody());
                 throw new RuntimeException("No 'embedding' key in Ollama response");
             }
-            List<Double> rawEmbeddings = (List<Double>) embeddingObj;
-            List<Float> embeddings = rawEmbeddings.stream()
-                .map(Double::floatValue)
-                .collect(Collectors.toList());
-
-            if (embeddings.size() > TARGET_DIMENSION) {
-                embeddings = reduceDimensions(embeddings);
-            } else if (embeddings.size() < TARGET_DIMENSION) {
-                embeddings = padDimensions(embeddings);
-            }
-
+            List<Float> embeddings = toTargetDimension((List<Number>) embeddingObj);
             logger.debug("Generated embeddings with dimension: {}", embeddings.size());
             return embeddings;
         } else {
@@ -81,6 +79,55 @@ public class OllamaService implements EmbeddingService {
         }
     }
 
+    /**
+     * Embed texts through the batch endpoint, {@code ollama.embedding.batch-size} per call.
+     * The batch endpoint returns unit-length vectors; that only rescales them, so cosine
+     * scores match the single-text endpoint.
+     */
+    @Override
+    public List<List<Float>> getEmbeddingsBatch(List<String> texts, RequestPriority priority) {
+        List<List<Float>> embeddings = new ArrayList<>(texts.size());
+        for (int from = 0; from < texts.size(); from += embeddingBatchSize) {
+            List<String> chunk = texts.subList(from, Math.min(from + embeddingBatchSize, texts.size()));
+            Map<String, Object> request = new HashMap<>();
+            request.put("model", model);
+            request.put("input", chunk);
+            request.put("keep_alive", keepAlive);
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            HttpEntity<Map<String, Object>> requestEntity = new HttpEntity<>(request, headers);
+
+            ResponseEntity<Map> response = embeddingPool.execute(priority, baseUrl -> restTemplate.exchange(
+                baseUrl + BATCH_EMBED_ENDPOINT,
+                HttpMethod.POST,
+                requestEntity,
+                Map.class
+            ));
+
+            Object batch = response.getBody() != null ? response.getBody().get("embeddings") : null;
+            if (!(batch instanceof List<?> vectors) || vectors.size() != chunk.size()) {
+                logger.error("Unexpected Ollama batch embedding response: {}", response.getStatusCode());
+                throw new RuntimeException("Ollama returned no embeddings or the wrong number of them");
+            }
+            vectors.forEach(vector -> embeddings.add(toTargetDimension((List<Number>) vector)));
+        }
+        logger.debug("Generated {} embeddings in batches of {}", embeddings.size(), embeddingBatchSize);
+        return embeddings;
+    }
+
+    private List<Float> toTargetDimension(List<Number> raw) {
+        List<Float> embeddings = raw.stream()
+            .map(Number::floatValue)
+            .collect(Collectors.toList());
+        if (embeddings.size() > TARGET_DIMENSION) {
+            return reduceDimensions(embeddings);
+        } else if (embeddings.size() < TARGET_DIMENSION) {
+            return padDimensions(embeddings);
+        }
+        return embeddings;
+    }
+
     private List<Float> reduceDimensions(List<Float> embeddings) {
         // Simple averaging approach to reduce dimensions
         int originalSize = embeddings.size();
@@ -113,7 +160,7 @@ public class OllamaService implements EmbeddingService {
         return padded;
     }
 
-    public String getChatCompletion(String prompt) {
+    public String getChatCompletion(String prompt, RequestPriority priority) {
         try {
             logger.debug("Getting chat completion for prompt of length: {}", prompt.length());
             Map<String, Object> requestBody = new HashMap<>();
@@ -122,17 +169,19 @@ public class OllamaService implements EmbeddingService {
                 "role", "user",
                 "content", prompt
             )));
+            requestBody.put("stream", false);
+            requestBody.put("keep_alive", keepAlive);
 
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
             HttpEntity<Map<String, Object>> requestEntity = new HttpEntity<>(requestBody, headers);
 
-            ResponseEntity<Map> response = restTemplate.exchange(
+            ResponseEntity<Map> response = chatPool.execute(priority, baseUrl -> restTemplate.exchange(
                 baseUrl + CHAT_ENDPOINT,
                 HttpMethod.POST,
                 requestEntity,
                 Map.class
-            );
+            ));
 
             if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
                 Map<String, Object> responseBody = response.getBody();
@@ -0,0 +1,37 @@
+package com.agent.service;
+
+/**
+ * Priority classes for Ollama requests, most urgent first.
+ */
+public enum RequestPriority {
+    /** A user is waiting on the response, e.g. task generation and its retrieval. */
+    INTERACTIVE("interactive"),
+    /** Health checks, which should not time out behind queued work. */
+    HEALTH("health"),
+    /** Embedding new memories; delay only postpones when they become searchable. */
+    MEMORY_WRITE("memory-write"),
+    /** Bulk work such as batch search and ingestion. */
+    INGESTION("ingestion");
+
+    private final String key;
+
+    RequestPriority(String key) {
+        this.key = key;
+    }
+
+    /**
+     * The name used in configuration and metrics.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    public static RequestPriority fromKey(String key) {
+        for (RequestPriority priority : values()) {
+            if (priority.key.equals(key)) {
+                return priority;
+            }
+        }
+        throw new IllegalArgumentException("Unknown request priority '" + key + "'");
+    }
+}
@@ -0,0 +1,169 @@
+package com.agent.agent.core;
+
+import com.agent.agent.memory.MemoryMatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContextAssemblerTest {
+    private static final int DIMENSION = 32;
+    private static final int LINE_OVERHEAD_TOKENS = 2;
+
+    private final Random random = new Random(23);
+    private ContextAssembler assembler;
+
+    @BeforeEach
+    void setUp() {
+        assembler = new ContextAssembler();
+        ReflectionTestUtils.setField(assembler, "candidates", 20);
+        ReflectionTestUtils.setField(assembler, "tokenBudget", 1024);
+        ReflectionTestUtils.setField(assembler, "maxMemoryTokens", 256);
+        ReflectionTestUtils.setField(assembler, "lambda", 0.7);
+        ReflectionTestUtils.setField(assembler, "maxMemories", 8);
+        ReflectionTestUtils.setField(assembler, "memoryTypes", List.of("result"));
+    }
+
+    private float[] randomVector() {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    /** A vector with the given cosine similarity to {@code base}. */
+    private float[] withSimilarity(float[] base, double similarity) {
+        float[] other = randomVector();
+        double dot = 0;
+        double baseNorm = 0;
+        for (int i = 0; i < DIMENSION; i++) {
+            dot += other[i] * base[i];
+            baseNorm += base[i] * base[i];
+        }
+        // Make other orthogonal to base, then rescale both to unit length before mixing
+        double orthoNorm = 0;
+        for (int i = 0; i < DIMENSION; i++) {
+            other[i] -= (float) (dot / baseNorm * base[i]);
+            orthoNorm += other[i] * other[i];
+        }
+        float[] mixed = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            mixed[i] = (float) (similarity * base[i] / Math.sqrt(baseNorm)
+                + Math.sqrt(1 - similarity * similarity) * other[i] / Math.sqrt(orthoNorm));
+        }
+        return mixed;
+    }
+
+    private static List<Float> toList(float[] vector) {
+        List<Float> list = new ArrayList<>(vector.length);
+        for (float value : vector) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    private static MemoryMatch match(String id, String text, float[] values) {
+        return new MemoryMatch(id, 0.5, text, values, Map.of("type", "result"));
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(i == 0 ? "" : random.nextInt(12) == 0 ? ". " : " ").append("word").append(random.nextInt(100));
+        }
+        return text.toString();
+    }
+
+    private static int tokensUsed(List<MemoryMatch> selected) {
+        return selected.stream().mapToInt(match -> TokenEstimator.estimate(match.text()) + LINE_OVERHEAD_TOKENS).sum();
+    }
+
+    @Test
+    void ranksByRelevanceWhenCandidatesAreUnrelated() {
+        float[] query = randomVector();
+        List<MemoryMatch> matches = List.of(
+            match("low", "low", withSimilarity(query, 0.2)),
+            match("high", "high", withSimilarity(query, 0.9)),
+            match("mid", "mid", withSimilarity(query, 0.6)));
+
+        assertThat(assembler.assemble(toList(query), matches)).extracting(MemoryMatch::id)
+            .containsExactly("high", "mid", "low");
+    }
+
+    @Test
+    void aNearDuplicateLosesToADifferentMemory() {
+        ReflectionTestUtils.setField(assembler, "lambda", 0.5);
+        float[] query = randomVector();
+        float[] top = withSimilarity(query, 0.9);
+        float[] copy = top.clone();
+        copy[0] += 0.001f;
+        List<MemoryMatch> matches = List.of(
+            match("top", "top", top),
+            match("copy", "copy", copy),
+            match("other", "other", withSimilarity(query, 0.7)));
+
+        assertThat(assembler.assemble(toList(query), matches)).extracting(MemoryMatch::id)
+            .containsExactly("top", "other", "copy");
+    }
+
+    @Test
+    void candidatesWithoutValuesAreRankedByTheirScore() {
+        List<MemoryMatch> matches = List.of(
+            new MemoryMatch("b", 0.4, "b", null, Map.of()),
+            new MemoryMatch("a", 0.8, "a", null, Map.of()));
+
+        assertThat(assembler.assemble(toList(randomVector()), matches)).extracting(MemoryMatch::id)
+            .containsExactly("a", "b");
+    }
+
+    @Test
+    void stopsAtMaxMemories() {
+        ReflectionTestUtils.setField(assembler, "maxMemories", 3);
+        float[] query = randomVector();
+        List<MemoryMatch> matches = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            matches.add(match("m" + i, "short", randomVector()));
+        }
+
+        assertThat(assembler.assemble(toList(query), matches)).hasSize(3);
+    }
+
+    @Test
+    void cutsMemoriesLongerThanThePerMemoryCap() {
+        ReflectionTestUtils.setField(assembler, "maxMemoryTokens", 20);
+        String text = words(new Random(1), 200);
+
+        List<MemoryMatch> selected = assembler.assemble(toList(randomVector()), List.of(match("long", text, randomVector())));
+
+        assertThat(selected).hasSize(1);
+        assertThat(selected.get(0).text()).endsWith(" …");
+        assertThat(TokenEstimator.estimate(selected.get(0).text())).isLessThanOrEqualTo(20);
+    }
+
+    @Test
+    void neverExceedsTheTokenBudget() {
+        Random texts = new Random(5);
+        for (int trial = 0; trial < 300; trial++) {
+            int budget = 3 + texts.nextInt(400);
+            ReflectionTestUtils.setField(assembler, "tokenBudget", budget);
+            ReflectionTestUtils.setField(assembler, "maxMemoryTokens", 1 + texts.nextInt(150));
+            ReflectionTestUtils.setField(assembler, "maxMemories", 1 + texts.nextInt(12));
+            List<MemoryMatch> matches = new ArrayList<>();
+            for (int i = 0; i < 15; i++) {
+                matches.add(match("m" + i, words(texts, 1 + texts.nextInt(120)), randomVector()));
+            }
+
+            List<MemoryMatch> selected = assembler.assemble(toList(randomVector()), matches);
+
+            assertThat(tokensUsed(selected)).as("trial %d", trial).isLessThanOrEqualTo(budget);
+            assertThat(selected).noneMatch(match -> match.text().isEmpty());
+        }
+    }
+}
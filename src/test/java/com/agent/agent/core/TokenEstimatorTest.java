@@ -0,0 +1,64 @@
+package com.agent.agent.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenEstimatorTest {
+    private static final String[] WORDS = {"the", "memory", "store", "returned", "4096", "vectors", "—", "in",
+        "CamelCaseIdentifiers", "a", "ok.", "why?", "(see", "notes)", "x", "embeddings,", "!"};
+
+    private static String randomText(Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                text.append(random.nextInt(10) == 0 ? "  " : " ");
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    @Test
+    void countsWordPiecesAndPunctuation() {
+        assertThat(TokenEstimator.estimate("")).isZero();
+        assertThat(TokenEstimator.estimate("word")).isEqualTo(1);
+        assertThat(TokenEstimator.estimate("words")).isEqualTo(2);
+        assertThat(TokenEstimator.estimate("a, b.")).isEqualTo(4);
+    }
+
+    @Test
+    void textThatFitsIsReturnedUnchanged() {
+        String text = "Short enough. Stays as is.";
+        assertThat(TokenEstimator.truncate(text, TokenEstimator.estimate(text))).isSameAs(text);
+    }
+
+    @Test
+    void prefersToCutAtASentenceEnd() {
+        String text = "The first sentence is here. The second sentence goes on for quite a while longer";
+        assertThat(TokenEstimator.truncate(text, 12)).isEqualTo("The first sentence is here. …");
+    }
+
+    @Test
+    void truncatedTextIncludingTheEllipsisNeverExceedsTheLimit() {
+        Random random = new Random(17);
+        for (int trial = 0; trial < 5000; trial++) {
+            String text = randomText(random, 1 + random.nextInt(60));
+            int maxTokens = random.nextInt(TokenEstimator.estimate(text) + 2);
+            String truncated = TokenEstimator.truncate(text, maxTokens);
+            assertThat(TokenEstimator.estimate(truncated)).as("%s cut to %d", text, maxTokens).isLessThanOrEqualTo(maxTokens);
+            if (!truncated.equals(text) && !truncated.isEmpty()) {
+                assertThat(truncated).endsWith(" …");
+                assertThat(text).startsWith(truncated.substring(0, truncated.length() - 2));
+            }
+        }
+    }
+
+    @Test
+    void aLimitTooSmallForTextAndEllipsisYieldsNothing() {
+        assertThat(TokenEstimator.truncate("several words here", 1)).isEmpty();
+        assertThat(TokenEstimator.truncate("anything", 0)).isEmpty();
+    }
+}
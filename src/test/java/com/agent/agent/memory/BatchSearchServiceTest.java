@@ -0,0 +1,148 @@
+package com.agent.agent.memory;
+
+import com.agent.service.EmbeddingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BatchSearchServiceTest {
+    private MemoryService memoryService;
+    private EmbeddingService embeddingService;
+    private BatchSearchService service;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        memoryService = mock(MemoryService.class);
+        embeddingService = mock(EmbeddingService.class);
+        // Each query's embedding is its position, so answers can be told apart
+        when(embeddingService.getEmbeddingsBatch(anyList(), any())).thenAnswer(call ->
+            ((List<String>) call.getArgument(0)).stream().map(query -> List.of((float) query.length())).toList());
+        when(memoryService.queryMemories(anyList(), anyInt(), anyBoolean(), any())).thenAnswer(call -> {
+            float length = ((List<Float>) call.getArgument(0)).get(0);
+            if (length >= 10) {
+                release.await(5, TimeUnit.SECONDS);
+            }
+            if (length == 5) {
+                throw new RuntimeException("Pinecone down");
+            }
+            if (length == 7) {
+                Thread.sleep(150);
+            }
+            return List.<Map<String, Object>>of(Map.of("length", length));
+        });
+        service = service(2, 100);
+    }
+
+    private BatchSearchService service(int parallelism, int maxPendingQueries) {
+        BatchSearchService created = new BatchSearchService(memoryService, embeddingService, parallelism, maxPendingQueries);
+        ReflectionTestUtils.setField(created, "maxBatchQueries", 50);
+        ReflectionTestUtils.setField(created, "embedBatchSize", 2);
+        ReflectionTestUtils.setField(created, "queryTimeoutMs", 300L);
+        return created;
+    }
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        service.shutdown();
+    }
+
+    @Test
+    void returnsOneResultPerQueryInInputOrder() {
+        List<BatchSearchService.Result> results = service.search(List.of("a", "bbb", "cc"), 3, MemoryFilter.none());
+
+        assertThat(results).extracting(BatchSearchService.Result::query).containsExactly("a", "bbb", "cc");
+        assertThat(results).allMatch(BatchSearchService.Result::succeeded);
+        assertThat(results.get(1).matches()).containsExactly(Map.of("length", 3f));
+    }
+
+    @Test
+    void failuresAreReportedOnTheQueriesTheyAffect() {
+        when(embeddingService.getEmbeddingsBatch(eq(List.of("x", "y")), any())).thenThrow(new RuntimeException("Ollama down"));
+
+        List<BatchSearchService.Result> results = service.search(List.of("a", "fails", "x", "y"), 3, MemoryFilter.none());
+
+        assertThat(results.get(0).succeeded()).isTrue();
+        assertThat(results.get(1).error()).isEqualTo("Pinecone down");
+        assertThat(results.get(2).error()).isEqualTo("Embedding failed: Ollama down");
+        assertThat(results.get(3).error()).isEqualTo("Embedding failed: Ollama down");
+    }
+
+    @Test
+    void aQueryThatMissesItsDeadlineFailsAloneAndPromptly() {
+        long started = System.currentTimeMillis();
+
+        List<BatchSearchService.Result> results = service.search(List.of("slow query", "a", "b"), 3, MemoryFilter.none());
+
+        assertThat(System.currentTimeMillis() - started).isLessThan(2000);
+        assertThat(results.get(0).error()).isEqualTo("Timed out after 300 ms");
+        assertThat(results.get(1).succeeded()).isTrue();
+        assertThat(results.get(2).succeeded()).isTrue();
+    }
+
+    @Test
+    void timeQueuedBehindTheRestOfTheBatchDoesNotCountAgainstAQuery() {
+        // Ten 150 ms queries on two threads take about 750 ms, more than twice the timeout
+        List<String> queries = Collections.nCopies(10, "7 chars");
+
+        List<BatchSearchService.Result> results = service.search(queries, 3, MemoryFilter.none());
+
+        assertThat(results).allMatch(BatchSearchService.Result::succeeded);
+    }
+
+    @Test
+    void aSlowQueryIsCancelledOnceItHasRunForTheTimeout() {
+        long started = System.currentTimeMillis();
+
+        List<BatchSearchService.Result> results = service.search(List.of("slow query", "slow query", "a"), 3, MemoryFilter.none());
+
+        // Both slow queries start at once, so both are cancelled near 300 ms and the third runs after them
+        assertThat(System.currentTimeMillis() - started).isLessThan(2000);
+        assertThat(results.get(0).error()).isEqualTo("Timed out after 300 ms");
+        assertThat(results.get(1).error()).isEqualTo("Timed out after 300 ms");
+        assertThat(results.get(2).succeeded()).isTrue();
+    }
+
+    @Test
+    void rejectsABatchWhileOthersHoldThePendingSlots() throws Exception {
+        service.shutdown();
+        service = service(3, 4);
+        ReflectionTestUtils.setField(service, "queryTimeoutMs", 5000L);
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<BatchSearchService.Result>> first = caller.submit(() ->
+                service.search(List.of("slow query", "slow query", "a"), 3, MemoryFilter.none()));
+            verify(memoryService, timeout(2000).atLeast(2)).queryMemories(anyList(), anyInt(), anyBoolean(), any());
+
+            assertThatThrownBy(() -> service.search(List.of("b", "c"), 3, MemoryFilter.none()))
+                .isInstanceOf(RejectedExecutionException.class);
+            assertThat(service.search(List.of("b"), 3, MemoryFilter.none())).allMatch(BatchSearchService.Result::succeeded);
+
+            release.countDown();
+            assertThat(first.get(5, TimeUnit.SECONDS)).allMatch(BatchSearchService.Result::succeeded);
+            // Slots are returned once a batch finishes
+            assertThat(service.search(List.of("b", "c", "d", "e"), 3, MemoryFilter.none())).hasSize(4);
+        } finally {
+            caller.shutdownNow();
+        }
+    }
+
+    @Test
+    void rejectsBatchesLargerThanTheLimit() {
+        List<String> queries = Collections.nCopies(51, "a");
+        assertThatThrownBy(() -> service.search(queries, 3, MemoryFilter.none()))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("At most 50");
+    }
+}
@@ -0,0 +1,208 @@
+package com.agent.agent.memory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MemoryConsolidationServiceTest {
+    private static final int DIMENSION = 64;
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    private final Map<String, TreeMap<String, Map<String, Object>>> store = new HashMap<>();
+    private final Random random = new Random(11);
+    private PineconeService pinecone;
+    private MemoryAccessTracker accessTracker;
+    private MemoryConsolidationService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        pinecone = mock(PineconeService.class);
+        when(pinecone.listVectorIds(anyString(), any(), anyInt())).thenAnswer(call -> {
+            List<String> ids = new ArrayList<>(namespace(call.getArgument(0)).keySet());
+            int from = call.getArgument(1) == null ? 0 : Integer.parseInt(call.getArgument(1));
+            int to = Math.min(ids.size(), from + (int) call.getArgument(2));
+            return new PineconeService.VectorPage(ids.subList(from, to), to < ids.size() ? String.valueOf(to) : null);
+        });
+        when(pinecone.fetchVectors(anyString(), anyList())).thenAnswer(call -> {
+            Map<String, Map<String, Object>> found = new LinkedHashMap<>();
+            for (String id : (List<String>) call.getArgument(1)) {
+                Map<String, Object> vector = namespace(call.getArgument(0)).get(id);
+                if (vector != null) {
+                    found.put(id, vector);
+                }
+            }
+            return found;
+        });
+        doAnswer(call -> {
+            for (Map<String, Object> vector : (List<Map<String, Object>>) call.getArgument(1)) {
+                namespace(call.getArgument(0)).put((String) vector.get("id"), vector);
+            }
+            return null;
+        }).when(pinecone).upsertVectors(anyString(), anyList());
+        doAnswer(call -> {
+            ((List<String>) call.getArgument(1)).forEach(namespace(call.getArgument(0))::remove);
+            return null;
+        }).when(pinecone).deleteVectors(anyString(), anyList());
+
+        accessTracker = new MemoryAccessTracker();
+        service = new MemoryConsolidationService(pinecone, accessTracker, new MemoryNamespaces(List.of()),
+            List.of("result:30"));
+        ReflectionTestUtils.setField(service, "similarityThreshold", 0.97);
+        ReflectionTestUtils.setField(service, "minAccessCount", 1L);
+        ReflectionTestUtils.setField(service, "deleteBatchSize", 1000);
+        ReflectionTestUtils.setField(service, "maxMemoriesPerRun", 50_000);
+    }
+
+    private TreeMap<String, Map<String, Object>> namespace(String namespace) {
+        return store.computeIfAbsent(namespace, key -> new TreeMap<>());
+    }
+
+    private List<Double> randomVector() {
+        List<Double> vector = new ArrayList<>(DIMENSION);
+        for (int i = 0; i < DIMENSION; i++) {
+            vector.add(random.nextGaussian());
+        }
+        return vector;
+    }
+
+    private List<Double> nearDuplicate(List<Double> vector) {
+        return vector.stream().map(value -> value + 0.01 * random.nextGaussian()).toList();
+    }
+
+    private void put(String id, List<Double> values, String type, long ageDays, long accessCount) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("type", type);
+        metadata.put("timestamp", System.currentTimeMillis() - ageDays * DAY_MS);
+        metadata.put("access_count", accessCount);
+        Map<String, Object> vector = new HashMap<>();
+        vector.put("id", id);
+        vector.put("values", values);
+        vector.put("metadata", metadata);
+        namespace("").put(id, vector);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> metadata(String id) {
+        return (Map<String, Object>) namespace("").get(id).get("metadata");
+    }
+
+    @Test
+    void mergesNearDuplicatesIntoTheMostAccessedMember() {
+        List<Double> original = randomVector();
+        put("a", original, "result", 1, 1);
+        put("b", nearDuplicate(original), "result", 2, 5);
+        put("c", randomVector(), "result", 1, 0);
+
+        Map<String, Object> report = service.consolidate();
+
+        assertThat(report).containsEntry("duplicatesRemoved", 1).containsEntry("evicted", 0);
+        assertThat(namespace("").keySet()).containsExactly("b", "c");
+        assertThat(metadata("b")).containsEntry("access_count", 6L).containsEntry("merged_count", 2L);
+        assertThat(metadata("c")).doesNotContainKey("merged_count");
+    }
+
+    @Test
+    void keepsDuplicatesOfDifferentTypes() {
+        List<Double> original = randomVector();
+        put("a", original, "result", 1, 0);
+        put("b", nearDuplicate(original), "manual_update", 1, 0);
+
+        assertThat(service.consolidate()).containsEntry("duplicatesRemoved", 0);
+        assertThat(namespace("").keySet()).containsExactly("a", "b");
+    }
+
+    @Test
+    void evictsOnlyOldRarelyRetrievedMemoriesOfTypesWithAMaxAge() {
+        put("old-unused", randomVector(), "result", 40, 0);
+        put("old-used", randomVector(), "result", 40, 3);
+        put("recent", randomVector(), "result", 5, 0);
+        put("old-untyped-limit", randomVector(), "manual_update", 400, 0);
+
+        assertThat(service.consolidate()).containsEntry("evicted", 1);
+        assertThat(namespace("").keySet()).containsExactlyInAnyOrder("old-used", "recent", "old-untyped-limit");
+    }
+
+    @Test
+    void retrievalsSinceTheLastRunCountTowardsEviction() {
+        put("old", randomVector(), "result", 40, 0);
+        accessTracker.recordAccess("old");
+
+        assertThat(service.consolidate()).containsEntry("evicted", 0);
+        assertThat(metadata("old")).containsEntry("access_count", 1L);
+    }
+
+    @Test
+    void writesMergedCountsBeforeDeletingDuplicates() {
+        List<Double> original = randomVector();
+        put("a", original, "result", 1, 1);
+        put("b", nearDuplicate(original), "result", 2, 5);
+        doThrow(new RuntimeException("delete failed")).when(pinecone).deleteVectors(anyString(), anyList());
+
+        assertThatThrownBy(() -> service.consolidate()).hasMessage("delete failed");
+
+        InOrder order = inOrder(pinecone);
+        order.verify(pinecone).upsertVectors(eq(""), anyList());
+        order.verify(pinecone).deleteVectors(eq(""), anyList());
+        assertThat(metadata("b")).containsEntry("access_count", 6L).containsEntry("merged_count", 2L);
+    }
+
+    @Test
+    void aSecondRunChangesNothing() {
+        List<Double> original = randomVector();
+        put("a", original, "result", 1, 1);
+        put("b", nearDuplicate(original), "result", 2, 5);
+        put("old", randomVector(), "result", 40, 0);
+        put("kept", randomVector(), "result", 1, 0);
+        accessTracker.recordAccess("kept");
+        service.consolidate();
+        Map<String, Map<String, Object>> afterFirstRun = new TreeMap<>(namespace(""));
+        clearInvocations(pinecone);
+
+        Map<String, Object> report = service.consolidate();
+
+        assertThat(report).containsEntry("duplicatesRemoved", 0).containsEntry("evicted", 0).containsEntry("updated", 0);
+        verify(pinecone, never()).upsertVectors(anyString(), anyList());
+        verify(pinecone, never()).deleteVectors(anyString(), anyList());
+        assertThat(namespace("")).isEqualTo(afterFirstRun);
+        assertThat(metadata("kept")).containsEntry("access_count", 1L);
+    }
+
+    @Test
+    void dryRunWritesNothingAndKeepsPendingCounts() {
+        ReflectionTestUtils.setField(service, "dryRun", true);
+        List<Double> original = randomVector();
+        put("a", original, "result", 1, 0);
+        put("b", nearDuplicate(original), "result", 1, 0);
+        accessTracker.recordAccess("a");
+
+        assertThat(service.consolidate()).containsEntry("duplicatesRemoved", 1);
+        verify(pinecone, never()).upsertVectors(anyString(), anyList());
+        verify(pinecone, never()).deleteVectors(anyString(), anyList());
+        assertThat(accessTracker.drain()).containsEntry("a", 1L);
+    }
+
+    @Test
+    void resumesWhereTheCappedRunStopped() {
+        ReflectionTestUtils.setField(service, "maxMemoriesPerRun", 3);
+        for (int i = 0; i < 5; i++) {
+            put("m" + i, randomVector(), "result", 1, 0);
+        }
+
+        assertThat(service.consolidate()).containsEntry("scanned", 3).containsEntry("complete", false);
+        assertThat(service.consolidate()).containsEntry("scanned", 2).containsEntry("complete", true);
+        assertThat(service.consolidate()).containsEntry("scanned", 3);
+    }
+}
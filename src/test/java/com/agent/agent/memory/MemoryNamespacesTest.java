@@ -0,0 +1,87 @@
+package com.agent.agent.memory;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemoryNamespacesTest {
+    private final MemoryNamespaces namespaces = new MemoryNamespaces(List.of("result:results", " batch-test : test ", "test-embeddings:test"));
+
+    @Test
+    void routesByTypeAndLeavesTheRestInTheDefaultNamespace() {
+        assertThat(namespaces.forMetadata(Map.of("type", "result", "source", "memory"))).isEqualTo("results");
+        assertThat(namespaces.forMetadata(Map.of("type", "batch-test"))).isEqualTo("test");
+        assertThat(namespaces.forMetadata(Map.of("type", "manual_update"))).isEqualTo(MemoryNamespaces.DEFAULT_NAMESPACE);
+        // The source never picks the namespace, because filters cannot narrow on it soundly
+        assertThat(namespaces.forMetadata(Map.of("source", "batch-test"))).isEqualTo(MemoryNamespaces.DEFAULT_NAMESPACE);
+        assertThat(namespaces.forMetadata(null)).isEqualTo(MemoryNamespaces.DEFAULT_NAMESPACE);
+    }
+
+    @Test
+    void listsEveryNamespaceOnceWithTheDefaultFirst() {
+        assertThat(namespaces.all()).containsExactly("", "results", "test");
+    }
+
+    @Test
+    void filtersPinningMappedTypesAlsoSearchTheDefaultNamespaceUntilItIsMigrated() {
+        // Memories of a type written before it was mapped are still in the default namespace
+        assertThat(namespaces.forFilter(MemoryFilter.none().eq("type", "result"))).containsExactly("results", "");
+        assertThat(namespaces.forFilter(MemoryFilter.none().eq("type", "manual_update"))).containsExactly("");
+        // A filter no memory can match searches nothing
+        assertThat(namespaces.forFilter(MemoryFilter.none().eq("type", "result").eq("type", "batch-test"))).isEmpty();
+    }
+
+    @Test
+    void filtersPinningTypesSearchOnlyThoseTypesNamespacesOnceMigrated() {
+        ReflectionTestUtils.setField(namespaces, "searchDefault", false);
+        assertThat(namespaces.forFilter(MemoryFilter.none().eq("type", "result"))).containsExactly("results");
+        assertThat(namespaces.forFilter(MemoryFilter.none().in("type", List.of("batch-test", "test-embeddings"))))
+            .containsExactly("test");
+        assertThat(namespaces.forFilter(MemoryFilter.none().in("type", List.of("result", "manual_update"))))
+            .containsExactlyInAnyOrder("results", "");
+        // Conditions on the same field intersect
+        assertThat(namespaces.forFilter(MemoryFilter.none().in("type", List.of("result", "batch-test")).eq("type", "result")))
+            .containsExactly("results");
+    }
+
+    @Test
+    void filtersThatDoNotPinTheTypeSearchEverything() {
+        assertThat(namespaces.forFilter(MemoryFilter.none())).isEqualTo(namespaces.all());
+        assertThat(namespaces.forFilter(MemoryFilter.none().eq("source", "batch-test"))).isEqualTo(namespaces.all());
+        assertThat(namespaces.forFilter(MemoryFilter.none().storedBetween(0L, 10L))).isEqualTo(namespaces.all());
+    }
+
+    @Test
+    void everyMemoryAFilterMatchesLivesInANamespaceItSearches() {
+        List<Map<String, Object>> memories = List.of(
+            Map.of("type", "result", "source", "memory"),
+            Map.of("type", "manual_update", "source", "memory"),
+            Map.of("type", "batch-test", "source", "batch-test"),
+            Map.of("source", "memory"));
+        List<MemoryFilter> filters = List.of(
+            MemoryFilter.none(),
+            MemoryFilter.none().eq("type", "result"),
+            MemoryFilter.none().in("type", List.of("manual_update", "batch-test")),
+            MemoryFilter.none().eq("source", "memory"),
+            MemoryFilter.none().eq("source", "batch-test"));
+        for (MemoryFilter filter : filters) {
+            for (Map<String, Object> memory : memories) {
+                if (filter.matches(memory)) {
+                    assertThat(namespaces.forFilter(filter)).as("%s for %s", filter, memory).contains(namespaces.forMetadata(memory));
+                }
+            }
+        }
+    }
+
+    @Test
+    void rejectsMalformedMappings() {
+        assertThatThrownBy(() -> new MemoryNamespaces(List.of("result")))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThat(new MemoryNamespaces(List.of("")).all()).containsExactly("");
+    }
+}
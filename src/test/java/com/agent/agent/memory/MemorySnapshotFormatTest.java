@@ -0,0 +1,194 @@
+package com.agent.agent.memory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class MemorySnapshotFormatTest {
+    private static final int DIMENSION = 16;
+    /** Magic, version, encoding, dimension and created-at. */
+    private static final int HEADER_BYTES = 4 + 2 + 1 + 4 + 8;
+    /** Marker, length and checksum before each block's payload. */
+    private static final int BLOCK_PREFIX_BYTES = 12;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Random random = new Random(7);
+
+    private float[] randomVector() {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private MemorySnapshotFormat.Record record(String id, Map<String, Object> metadata) {
+        return new MemorySnapshotFormat.Record(id, randomVector(), metadata);
+    }
+
+    private byte[] write(MemorySnapshotFormat.Encoding encoding, Map<String, List<MemorySnapshotFormat.Record>> blocks) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (MemorySnapshotFormat.Writer writer = new MemorySnapshotFormat.Writer(bytes, encoding, objectMapper)) {
+            for (Map.Entry<String, List<MemorySnapshotFormat.Record>> block : blocks.entrySet()) {
+                writer.write(block.getKey(), block.getValue());
+            }
+            writer.finish();
+        }
+        return bytes.toByteArray();
+    }
+
+    private List<MemorySnapshotFormat.Block> read(byte[] snapshot) throws IOException {
+        List<MemorySnapshotFormat.Block> blocks = new ArrayList<>();
+        try (MemorySnapshotFormat.Reader reader = new MemorySnapshotFormat.Reader(new ByteArrayInputStream(snapshot), objectMapper)) {
+            MemorySnapshotFormat.Block block;
+            while ((block = reader.next(true)) != null) {
+                blocks.add(block);
+            }
+        }
+        return blocks;
+    }
+
+    @Test
+    void float32RoundTripIsExact() throws IOException {
+        Map<String, List<MemorySnapshotFormat.Record>> blocks = new LinkedHashMap<>();
+        blocks.put("", List.of(record("a", Map.of("type", "result", "text", "first")), record("b", Map.of("type", "result"))));
+        blocks.put("tests", List.of(record("c", Map.of("type", "batch-test", "text", "ünïcode ✓"))));
+
+        List<MemorySnapshotFormat.Block> read = read(write(MemorySnapshotFormat.Encoding.FLOAT32, blocks));
+
+        assertThat(read).extracting(MemorySnapshotFormat.Block::namespace).containsExactly("", "tests");
+        List<MemorySnapshotFormat.Record> expected = blocks.values().stream().flatMap(List::stream).toList();
+        List<MemorySnapshotFormat.Record> actual = read.stream().flatMap(block -> block.records().stream()).toList();
+        assertThat(actual).hasSameSizeAs(expected);
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i).id()).isEqualTo(expected.get(i).id());
+            assertThat(actual.get(i).values()).containsExactly(expected.get(i).values());
+            assertThat(actual.get(i).metadata()).isEqualTo(expected.get(i).metadata());
+        }
+    }
+
+    @Test
+    void int8QuantizationStaysWithinHalfAStep() throws IOException {
+        List<MemorySnapshotFormat.Record> records = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            records.add(record("m" + i, Map.of()));
+        }
+        records.add(new MemorySnapshotFormat.Record("zero", new float[DIMENSION], Map.of()));
+
+        List<MemorySnapshotFormat.Record> read = read(write(MemorySnapshotFormat.Encoding.INT8, Map.of("", records))).get(0).records();
+
+        for (int i = 0; i < records.size(); i++) {
+            float[] original = records.get(i).values();
+            float[] restored = read.get(i).values();
+            float maxAbs = 0;
+            for (float value : original) {
+                maxAbs = Math.max(maxAbs, Math.abs(value));
+            }
+            for (int d = 0; d < DIMENSION; d++) {
+                assertThat(restored[d]).isCloseTo(original[d], within(maxAbs / 254 + 1e-6f));
+            }
+            if (maxAbs > 0) {
+                assertThat(VectorMath.cosine(original, restored)).isGreaterThan(0.999);
+            }
+        }
+        assertThat(read.get(records.size() - 1).values()).containsOnly(0f);
+    }
+
+    @Test
+    void int8IsAboutAQuarterOfFloat32() throws IOException {
+        List<MemorySnapshotFormat.Record> records = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            records.add(record("m" + i, Map.of()));
+        }
+        int float32 = write(MemorySnapshotFormat.Encoding.FLOAT32, Map.of("", records)).length;
+        int int8 = write(MemorySnapshotFormat.Encoding.INT8, Map.of("", records)).length;
+        assertThat(int8).isLessThan(float32 / 2);
+    }
+
+    @Test
+    void metadataColumnsKeepTheirValuesWhateverTheMixOfTypes() throws IOException {
+        Map<String, Object> first = new HashMap<>();
+        first.put("text", "first");
+        first.put("mixed", "a string");
+        first.put("timestamp", 1.7e12);
+        first.put("score", 0.5);
+        first.put("flag", true);
+        first.put("tags", List.of("x", "y"));
+        Map<String, Object> second = new HashMap<>();
+        second.put("mixed", 5L);
+        second.put("timestamp", 1_700_000_000_001L);
+        second.put("score", 2L);
+        second.put("flag", false);
+        second.put("nested", Map.of("depth", 2));
+        Map<String, Object> third = new HashMap<>();
+
+        List<MemorySnapshotFormat.Record> read = read(write(MemorySnapshotFormat.Encoding.FLOAT32,
+            Map.of("", List.of(record("a", first), record("b", second), record("c", third))))).get(0).records();
+
+        Map<String, Object> a = read.get(0).metadata();
+        Map<String, Object> b = read.get(1).metadata();
+        assertThat(a).containsEntry("text", "first").containsEntry("mixed", "a string")
+            .containsEntry("score", 0.5).containsEntry("flag", true).containsEntry("tags", List.of("x", "y"))
+            .doesNotContainKey("nested");
+        // Whole numbers come back as longs even when Pinecone handed them over as floats
+        assertThat(a.get("timestamp")).isEqualTo(1_700_000_000_000L);
+        assertThat(b.get("timestamp")).isEqualTo(1_700_000_000_001L);
+        assertThat(b.get("score")).isEqualTo(2.0);
+        assertThat(((Number) b.get("mixed")).longValue()).isEqualTo(5L);
+        assertThat(b).containsEntry("flag", false).containsEntry("nested", Map.of("depth", 2)).doesNotContainKey("text");
+        assertThat(read.get(2).metadata()).isEmpty();
+    }
+
+    @Test
+    void aCorruptedBlockFailsItsChecksum() throws IOException {
+        byte[] snapshot = write(MemorySnapshotFormat.Encoding.FLOAT32,
+            Map.of("", List.of(record("a", Map.of("type", "result")))));
+        snapshot[HEADER_BYTES + BLOCK_PREFIX_BYTES + 10] ^= 0x01;
+
+        try (MemorySnapshotFormat.Reader reader = new MemorySnapshotFormat.Reader(new ByteArrayInputStream(snapshot), objectMapper)) {
+            assertThatThrownBy(() -> reader.next(false))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("checksum mismatch in block 0");
+        }
+    }
+
+    @Test
+    void aTruncatedSnapshotIsRejected() throws IOException {
+        byte[] snapshot = write(MemorySnapshotFormat.Encoding.FLOAT32, Map.of("", List.of(record("a", Map.of()))));
+        byte[] withoutTrailer = Arrays.copyOf(snapshot, snapshot.length - 16);
+
+        assertThatThrownBy(() -> read(withoutTrailer)).isInstanceOf(IOException.class).hasMessageContaining("truncated");
+        assertThatThrownBy(() -> read(Arrays.copyOf(snapshot, 10))).isInstanceOf(IOException.class)
+            .hasMessageContaining("incomplete header");
+    }
+
+    @Test
+    void anEmptySnapshotHasDimensionZeroAndNoBlocks() throws IOException {
+        byte[] snapshot = write(MemorySnapshotFormat.Encoding.INT8, Map.of("", List.of()));
+
+        try (MemorySnapshotFormat.Reader reader = new MemorySnapshotFormat.Reader(new ByteArrayInputStream(snapshot), objectMapper)) {
+            assertThat(reader.header().dimension()).isZero();
+            assertThat(reader.header().encoding()).isEqualTo(MemorySnapshotFormat.Encoding.INT8);
+            assertThat(reader.next(true)).isNull();
+            assertThat(reader.records()).isZero();
+        }
+    }
+
+    @Test
+    void vectorsOfADifferentDimensionCannotBeWritten() {
+        List<MemorySnapshotFormat.Record> records = List.of(record("a", Map.of()),
+            new MemorySnapshotFormat.Record("short", new float[DIMENSION - 1], Map.of()));
+
+        assertThatThrownBy(() -> write(MemorySnapshotFormat.Encoding.FLOAT32, Map.of("", records)))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("Vector short has dimension 15");
+    }
+}
@@ -0,0 +1,161 @@
+package com.agent.agent.memory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class MemorySnapshotServiceTest {
+    private static final int INDEX_DIMENSION = 8;
+
+    @TempDir
+    Path dir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, List<String>> upserted = new ConcurrentHashMap<>();
+    private PineconeService pinecone;
+    private MemoryWriteAheadLog writeAheadLog;
+    private MemorySnapshotService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        pinecone = mock(PineconeService.class);
+        doAnswer(call -> {
+            List<String> ids = upserted.computeIfAbsent(call.getArgument(0),
+                namespace -> Collections.synchronizedList(new ArrayList<>()));
+            ((List<Map<String, Object>>) call.getArgument(1)).forEach(vector -> ids.add((String) vector.get("id")));
+            return null;
+        }).when(pinecone).upsertVectors(anyString(), anyList());
+
+        writeAheadLog = mock(MemoryWriteAheadLog.class);
+        service = service(new MemoryNamespaces(List.of()));
+    }
+
+    private MemorySnapshotService service(MemoryNamespaces namespaces) {
+        MemorySnapshotService created = new MemorySnapshotService(pinecone, namespaces, writeAheadLog, objectMapper);
+        ReflectionTestUtils.setField(created, "directory", dir.toString());
+        ReflectionTestUtils.setField(created, "upsertBatchSize", 2);
+        ReflectionTestUtils.setField(created, "importParallelism", 2);
+        ReflectionTestUtils.setField(created, "indexDimension", INDEX_DIMENSION);
+        return created;
+    }
+
+    private void writeSnapshot(String name, int dimension, int records) throws IOException {
+        try (MemorySnapshotFormat.Writer writer = new MemorySnapshotFormat.Writer(
+                Files.newOutputStream(dir.resolve(name)), MemorySnapshotFormat.Encoding.FLOAT32, objectMapper)) {
+            List<MemorySnapshotFormat.Record> block = new ArrayList<>();
+            for (int i = 0; i < records; i++) {
+                block.add(new MemorySnapshotFormat.Record("m" + i, new float[dimension], Map.of("type", "result")));
+            }
+            writer.write("", block);
+            writer.finish();
+        }
+    }
+
+    @Test
+    void importsEveryRecordIntoItsNamespace() throws IOException {
+        writeSnapshot("full", INDEX_DIMENSION, 5);
+
+        Map<String, Object> report = service.importSnapshot("full", false);
+
+        assertThat(report).containsEntry("records", 5L).containsEntry("upsertRequests", 3);
+        assertThat(upserted.get("")).containsExactlyInAnyOrder("m0", "m1", "m2", "m3", "m4");
+    }
+
+    @Test
+    void rejectsASnapshotOfAnotherDimensionBeforeWriting() throws IOException {
+        writeSnapshot("wide", INDEX_DIMENSION * 2, 3);
+
+        assertThatThrownBy(() -> service.importSnapshot("wide", false))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Memory snapshot wide has dimension 16, the index expects 8");
+        verifyNoInteractions(pinecone);
+    }
+
+    @Test
+    void rejectsACorruptSnapshotBeforeWriting() throws IOException {
+        writeSnapshot("corrupt", INDEX_DIMENSION, 5);
+        byte[] bytes = Files.readAllBytes(dir.resolve("corrupt"));
+        bytes[bytes.length - 30] ^= 0x01;
+        Files.write(dir.resolve("corrupt"), bytes);
+
+        assertThatThrownBy(() -> service.importSnapshot("corrupt", false))
+            .isInstanceOf(UncheckedIOException.class)
+            .hasMessageContaining("checksum mismatch");
+        verifyNoInteractions(pinecone);
+    }
+
+    @Test
+    void acceptsAnEmptySnapshotWithDimensionZero() throws IOException {
+        writeSnapshot("empty", 0, 0);
+
+        assertThat(service.importSnapshot("empty", false)).containsEntry("records", 0L).containsEntry("upsertRequests", 0);
+        verifyNoInteractions(pinecone);
+    }
+
+    @Test
+    void reroutingMovesMemoriesToTheNamespaceTheirTypeMapsToNow() throws IOException {
+        List<String> deleted = new ArrayList<>();
+        doAnswer(call -> {
+            assertThat((String) call.getArgument(0)).isEmpty();
+            deleted.addAll(call.getArgument(1));
+            return null;
+        }).when(pinecone).deleteVectors(anyString(), anyList());
+        service = service(new MemoryNamespaces(List.of("result:results")));
+        // Exported before results were mapped, so everything is in the default namespace
+        try (MemorySnapshotFormat.Writer writer = new MemorySnapshotFormat.Writer(
+                Files.newOutputStream(dir.resolve("legacy")), MemorySnapshotFormat.Encoding.FLOAT32, objectMapper)) {
+            writer.write("", List.of(
+                new MemorySnapshotFormat.Record("r1", new float[INDEX_DIMENSION], Map.of("type", "result")),
+                new MemorySnapshotFormat.Record("n1", new float[INDEX_DIMENSION], Map.of("type", "manual_update")),
+                new MemorySnapshotFormat.Record("r2", new float[INDEX_DIMENSION], Map.of("type", "result")),
+                new MemorySnapshotFormat.Record("r3", new float[INDEX_DIMENSION], Map.of("type", "result"))));
+            writer.finish();
+        }
+
+        Map<String, Object> report = service.importSnapshot("legacy", true);
+
+        assertThat(report).containsEntry("records", 4L).containsEntry("rerouted", 3L);
+        assertThat(upserted.get("results")).containsExactlyInAnyOrder("r1", "r2", "r3");
+        assertThat(upserted.get("")).containsExactly("n1");
+        assertThat(deleted).containsExactly("r1", "r2", "r3");
+    }
+
+    @Test
+    void importWithoutReroutingKeepsTheExportedNamespaces() throws IOException {
+        writeSnapshot("full", INDEX_DIMENSION, 3);
+        service = service(new MemoryNamespaces(List.of("result:results")));
+
+        assertThat(service.importSnapshot("full", false)).containsEntry("rerouted", 0L);
+        assertThat(upserted).containsOnlyKeys("");
+        verify(pinecone, never()).deleteVectors(anyString(), anyList());
+    }
+
+    @Test
+    void exportFailsWhileTheWriteAheadLogCannotBeDrained() {
+        when(writeAheadLog.drain()).thenReturn(512L);
+        when(writeAheadLog.stats()).thenReturn(Collections.singletonMap("lastReplayError", "Pinecone down"));
+
+        assertThatThrownBy(() -> service.export("backup", "float32"))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("512 bytes")
+            .hasMessageContaining("Pinecone down");
+        verifyNoInteractions(pinecone);
+        assertThat(dir.resolve("backup")).doesNotExist();
+    }
+}
@@ -0,0 +1,281 @@
+package com.agent.agent.memory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class MemoryWriteAheadLogTest {
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    @TempDir
+    Path dir;
+
+    private PineconeService pinecone;
+    private final List<String> upserted = new ArrayList<>();
+    private final List<String> deleted = new ArrayList<>();
+    private final List<Integer> upsertRequestSizes = new ArrayList<>();
+    private final Set<String> invalid = new HashSet<>();
+    private final List<MemoryWriteAheadLog> opened = new ArrayList<>();
+    private volatile boolean pineconeDown;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        pinecone = mock(PineconeService.class);
+        doAnswer(call -> {
+            if (pineconeDown) {
+                throw new RuntimeException("Pinecone down");
+            }
+            List<Map<String, Object>> vectors = call.getArgument(1);
+            if (vectors.stream().anyMatch(vector -> invalid.contains(vector.get("id")))) {
+                // As PineconeService wraps it
+                throw new RuntimeException("Error upserting vectors to Pinecone",
+                    new HttpClientErrorException(HttpStatus.BAD_REQUEST, "Metadata size exceeds the limit"));
+            }
+            upsertRequestSizes.add(vectors.size());
+            vectors.forEach(vector -> upserted.add((String) vector.get("id")));
+            return null;
+        }).when(pinecone).upsertVectors(anyString(), anyList());
+        doAnswer(call -> {
+            deleted.addAll(call.getArgument(1));
+            return null;
+        }).when(pinecone).deleteVectors(anyString(), anyList());
+    }
+
+    @AfterEach
+    void closeLogs() {
+        opened.forEach(MemoryWriteAheadLog::close);
+    }
+
+    private MemoryWriteAheadLog open(int segmentSize, boolean fsync) throws IOException {
+        MemoryWriteAheadLog wal = new MemoryWriteAheadLog(pinecone, new ObjectMapper(), new MemoryNamespaces(List.of()));
+        ReflectionTestUtils.setField(wal, "enabled", true);
+        ReflectionTestUtils.setField(wal, "directory", dir.toString());
+        ReflectionTestUtils.setField(wal, "segmentSize", segmentSize);
+        ReflectionTestUtils.setField(wal, "fsync", fsync);
+        ReflectionTestUtils.setField(wal, "replayBatchSize", 10);
+        ReflectionTestUtils.setField(wal, "replayMaxBatchBytes", 1_000_000L);
+        wal.open();
+        opened.add(wal);
+        return wal;
+    }
+
+    private MemoryWriteAheadLog open() throws IOException {
+        return open(SEGMENT_SIZE, true);
+    }
+
+    private static void appendUpsert(MemoryWriteAheadLog wal, String id) {
+        List<Float> values = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            values.add((float) i);
+        }
+        wal.appendUpsert(id, values, Map.of("type", "result", "text", "memory " + id));
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> path.toString().endsWith(".wal")).sorted().toList();
+        }
+    }
+
+    private static long pendingBytes(MemoryWriteAheadLog wal) {
+        return (long) wal.stats().get("pendingBytes");
+    }
+
+    @Test
+    void acknowledgedRecordsReplayExactlyOnce() throws IOException {
+        MemoryWriteAheadLog wal = open();
+        appendUpsert(wal, "a");
+        appendUpsert(wal, "b");
+        wal.appendDelete("c");
+        appendUpsert(wal, "d");
+
+        wal.replay();
+        wal.replay();
+        assertThat(upserted).containsExactly("a", "b", "d");
+        assertThat(deleted).containsExactly("c");
+        assertThat(pendingBytes(wal)).isZero();
+
+        wal.close();
+        open().replay();
+        assertThat(upserted).containsExactly("a", "b", "d");
+    }
+
+    @Test
+    void recordsWrittenBeforeARestartAreReplayedAfterIt() throws IOException {
+        MemoryWriteAheadLog wal = open(SEGMENT_SIZE, false);
+        appendUpsert(wal, "a");
+        appendUpsert(wal, "b");
+        wal.close();
+
+        open().replay();
+        assertThat(upserted).containsExactly("a", "b");
+    }
+
+    @Test
+    void aTornFrameIsTruncatedOnRecovery() throws IOException {
+        MemoryWriteAheadLog wal = open();
+        appendUpsert(wal, "a");
+        appendUpsert(wal, "b");
+        // Nothing is replayed yet, so the valid frames end after the 8-byte header plus the backlog
+        int end = 8 + (int) pendingBytes(wal);
+        wal.close();
+
+        // A frame whose header landed but whose payload only partly did
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            ByteBuffer torn = ByteBuffer.allocate(8 + 40).putInt(500).putInt(0x12345678);
+            while (torn.hasRemaining()) {
+                torn.put((byte) 7);
+            }
+            channel.write(torn.flip(), end);
+        }
+
+        wal = open();
+        assertThat(pendingBytes(wal)).isEqualTo(end - 8);
+        ByteBuffer tail = ByteBuffer.allocate(600);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            channel.read(tail, end);
+        }
+        assertThat(tail.array()).containsOnly(0);
+
+        appendUpsert(wal, "c");
+        wal.close();
+        open().replay();
+        assertThat(upserted).containsExactly("a", "b", "c");
+    }
+
+    @Test
+    void segmentsRotateAndAreRemovedOnceReplayed() throws IOException {
+        MemoryWriteAheadLog wal = open(2048, true);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            ids.add("m" + i);
+            appendUpsert(wal, "m" + i);
+        }
+        assertThat(segments()).hasSizeGreaterThan(3);
+
+        wal.close();
+        wal = open(2048, true);
+        wal.replay();
+        assertThat(upserted).isEqualTo(ids);
+        assertThat(segments()).hasSize(1);
+    }
+
+    @Test
+    void aFailedReplayIsRetriedWithoutLosingOrRepeatingRecords() throws IOException {
+        MemoryWriteAheadLog wal = open();
+        appendUpsert(wal, "a");
+        pineconeDown = true;
+
+        wal.replay();
+        assertThat(wal.stats()).containsEntry("lastReplayError", "Pinecone down");
+        assertThat(pendingBytes(wal)).isPositive();
+
+        // Pinecone recovers; skip the backoff instead of waiting for it
+        pineconeDown = false;
+        ReflectionTestUtils.setField(wal, "nextReplayAt", 0L);
+        appendUpsert(wal, "b");
+        wal.replay();
+        assertThat(upserted).containsExactly("a", "b");
+        assertThat(wal.stats()).containsEntry("lastReplayError", null);
+    }
+
+    @Test
+    void aRejectedRecordIsQuarantinedWithoutBlockingLaterOnes() throws IOException {
+        MemoryWriteAheadLog wal = open();
+        appendUpsert(wal, "a");
+        appendUpsert(wal, "too-large");
+        appendUpsert(wal, "b");
+        wal.appendDelete("c");
+        appendUpsert(wal, "d");
+        invalid.add("too-large");
+
+        wal.replay();
+
+        assertThat(upserted).containsExactly("a", "b", "d");
+        assertThat(deleted).containsExactly("c");
+        assertThat(pendingBytes(wal)).isZero();
+        assertThat(wal.stats())
+            .containsEntry("lastReplayError", null)
+            .containsEntry("quarantined", 1L)
+            .containsEntry("recentQuarantinedIds", List.of("too-large"));
+        assertThat(Files.readString(dir.resolve("quarantine.jsonl")))
+            .contains("\"id\":\"too-large\"")
+            .contains("Metadata size exceeds the limit");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rateLimitingIsRetriedRatherThanQuarantined() throws IOException {
+        MemoryWriteAheadLog wal = open();
+        appendUpsert(wal, "a");
+        doThrow(new RuntimeException("Error upserting vectors to Pinecone",
+                new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS)))
+            .doAnswer(call -> {
+                ((List<Map<String, Object>>) call.getArgument(1)).forEach(vector -> upserted.add((String) vector.get("id")));
+                return null;
+            })
+            .when(pinecone).upsertVectors(anyString(), anyList());
+
+        wal.replay();
+        assertThat(wal.stats()).containsEntry("quarantined", 0L);
+        assertThat(pendingBytes(wal)).isPositive();
+
+        ReflectionTestUtils.setField(wal, "nextReplayAt", 0L);
+        wal.replay();
+        assertThat(upserted).containsExactly("a");
+    }
+
+    @Test
+    void replayBatchesAreSplitBySize() throws IOException {
+        MemoryWriteAheadLog wal = open();
+        // Each 64-value record is estimated at well over 500 bytes of request
+        ReflectionTestUtils.setField(wal, "replayMaxBatchBytes", 2_000L);
+        for (int i = 0; i < 10; i++) {
+            appendUpsert(wal, "m" + i);
+        }
+
+        wal.replay();
+
+        assertThat(upserted).hasSize(10);
+        assertThat(upsertRequestSizes).hasSizeGreaterThan(1).allMatch(size -> size < 10);
+    }
+
+    @Test
+    void drainReportsWhatPineconeHasNotTaken() throws IOException {
+        MemoryWriteAheadLog wal = open();
+        appendUpsert(wal, "a");
+        pineconeDown = true;
+        wal.replay();
+
+        // A drain does not wait out the backoff
+        pineconeDown = false;
+        appendUpsert(wal, "b");
+        assertThat(wal.drain()).isZero();
+        assertThat(upserted).containsExactly("a", "b");
+
+        appendUpsert(wal, "c");
+        pineconeDown = true;
+        assertThat(wal.drain()).isPositive();
+    }
+}
@@ -0,0 +1,166 @@
+package com.agent.agent.memory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SimHashLshTest {
+    private static final int DIMENSION = 64;
+    private static final double THRESHOLD = 0.97;
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static float[] perturb(float[] vector, double noise, Random random) {
+        float[] copy = vector.clone();
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] += (float) (noise * random.nextGaussian());
+        }
+        return copy;
+    }
+
+    /**
+     * Clusters the vectors at the threshold, counting the exact comparisons made.
+     */
+    private static int[] cluster(List<float[]> vectors, AtomicLong comparisons) {
+        SimHashLsh lsh = SimHashLsh.forWindow(DIMENSION, vectors.size(), THRESHOLD, 42);
+        long[][] signatures = new long[vectors.size()][];
+        for (int i = 0; i < signatures.length; i++) {
+            signatures[i] = lsh.signature(vectors.get(i));
+        }
+        return lsh.cluster(signatures, (i, j) -> {
+            comparisons.incrementAndGet();
+            return VectorMath.cosine(vectors.get(i), vectors.get(j)) >= THRESHOLD;
+        });
+    }
+
+    private static long groupsAmong(int[] roots, int from, int to) {
+        return Arrays.stream(roots, from, to).distinct().count();
+    }
+
+    @Test
+    void signaturesDependOnlyOnTheSeed() {
+        float[] vector = randomVector(new Random(1));
+        assertThat(new SimHashLsh(DIMENSION, 4, 16, 42).signature(vector))
+            .isEqualTo(new SimHashLsh(DIMENSION, 4, 16, 42).signature(vector));
+        assertThat(new SimHashLsh(DIMENSION, 4, 16, 42).signature(vector))
+            .isNotEqualTo(new SimHashLsh(DIMENSION, 4, 16, 7).signature(vector));
+    }
+
+    @Test
+    void scalingAVectorDoesNotChangeItsSignature() {
+        Random random = new Random(2);
+        SimHashLsh lsh = new SimHashLsh(DIMENSION, 4, 16, 42);
+        byte[] quantized = new byte[DIMENSION];
+        float[] scaled = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            quantized[i] = (byte) (random.nextInt(255) - 127);
+            scaled[i] = quantized[i] * 0.003f;
+        }
+        assertThat(lsh.signature(quantized)).isEqualTo(lsh.signature(scaled));
+    }
+
+    @Test
+    void tablesGrowWithTheWindowAndKeepRecallAtTheThreshold() {
+        SimHashLsh small = SimHashLsh.forWindow(1024, 100, THRESHOLD, 42);
+        SimHashLsh large = SimHashLsh.forWindow(1024, 50_000, THRESHOLD, 42);
+        assertThat(small.rows()).isEqualTo(8);
+        assertThat(large.rows()).isEqualTo(17);
+
+        double bitAgreement = 1 - Math.acos(THRESHOLD) / Math.PI;
+        for (SimHashLsh lsh : List.of(small, large)) {
+            double recall = 1 - Math.pow(1 - Math.pow(bitAgreement, lsh.rows()), lsh.tables());
+            assertThat(recall).isGreaterThanOrEqualTo(0.99);
+        }
+    }
+
+    @Test
+    void nearDuplicatesEndUpInOneGroupAndUnrelatedVectorsApart() {
+        Random random = new Random(3);
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            vectors.add(randomVector(random));
+        }
+        for (int i = 0; i < 50; i++) {
+            vectors.add(perturb(vectors.get(i), 0.01, random));
+        }
+
+        int[] roots = cluster(vectors, new AtomicLong());
+
+        for (int i = 0; i < 50; i++) {
+            assertThat(roots[200 + i]).isEqualTo(roots[i]);
+        }
+        assertThat(groupsAmong(roots, 0, 200)).isEqualTo(200);
+    }
+
+    @Test
+    void clustersLargerThanABucketAreStillMerged() {
+        Random random = new Random(4);
+        List<float[]> vectors = new ArrayList<>();
+        float[] original = randomVector(random);
+        for (int i = 0; i < 600; i++) {
+            vectors.add(perturb(original, 0.02, random));
+        }
+        for (int i = 0; i < 1000; i++) {
+            vectors.add(randomVector(random));
+        }
+        AtomicLong comparisons = new AtomicLong();
+
+        int[] roots = cluster(vectors, comparisons);
+
+        assertThat(groupsAmong(roots, 0, 600)).isEqualTo(1);
+        assertThat(groupsAmong(roots, 600, 1600)).isEqualTo(1000);
+        assertThat(Arrays.stream(roots, 600, 1600)).doesNotContain(roots[0]);
+        // Far fewer than the ~180,000 pairs within the cluster
+        assertThat(comparisons.get()).isLessThan(50_000);
+    }
+
+    @Test
+    void identicalVectorsAboveTheBucketCapFormOneGroup() {
+        float[] vector = randomVector(new Random(5));
+        List<float[]> vectors = Collections.nCopies(3 * SimHashLsh.MAX_BUCKET_SIZE, vector);
+        AtomicLong comparisons = new AtomicLong();
+
+        int[] roots = cluster(vectors, comparisons);
+
+        assertThat(groupsAmong(roots, 0, vectors.size())).isEqualTo(1);
+        assertThat(comparisons.get()).isEqualTo(vectors.size() - 1);
+    }
+
+    @Test
+    void aFullDefaultWindowNeedsFewComparisons() {
+        Random random = new Random(6);
+        List<float[]> vectors = new ArrayList<>(50_000);
+        for (int i = 0; i < 49_900; i++) {
+            vectors.add(randomVector(random));
+        }
+        for (int i = 0; i < 100; i++) {
+            vectors.add(perturb(vectors.get(i), 0.01, random));
+        }
+        AtomicLong comparisons = new AtomicLong();
+
+        int[] roots = cluster(vectors, comparisons);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(roots[49_900 + i]).isEqualTo(roots[i]);
+        }
+        assertThat(groupsAmong(roots, 0, 49_900)).isEqualTo(49_900);
+        // A few unrelated collisions per vector rather than a share of all 1.25 billion pairs
+        assertThat(comparisons.get()).isLessThan(500_000);
+    }
+
+    @Test
+    void rejectsTablesWiderThanAKey() {
+        assertThatThrownBy(() -> new SimHashLsh(DIMENSION, 4, 31, 42)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new SimHashLsh(DIMENSION, 0, 16, 42)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
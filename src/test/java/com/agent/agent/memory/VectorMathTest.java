@@ -0,0 +1,22 @@
+package com.agent.agent.memory;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class VectorMathTest {
+
+    @Test
+    void cosineOfKnownVectors() {
+        assertThat(VectorMath.cosine(new float[]{1, 0}, new float[]{1, 0})).isCloseTo(1.0, within(1e-9));
+        assertThat(VectorMath.cosine(new float[]{1, 0}, new float[]{0, 2})).isCloseTo(0.0, within(1e-9));
+        assertThat(VectorMath.cosine(new float[]{1, 1}, new float[]{-1, -1})).isCloseTo(-1.0, within(1e-6));
+        assertThat(VectorMath.cosine(new float[]{0, 0}, new float[]{1, 0})).isZero();
+    }
+
+    @Test
+    void cosineIgnoresTheTailOfTheLongerVector() {
+        assertThat(VectorMath.cosine(new float[]{1, 0}, new float[]{1, 0, 5})).isCloseTo(1.0, within(1e-9));
+    }
+}
@@ -0,0 +1,165 @@
+package com.agent.agent.memory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class WorkingMemoryTest {
+    private static final int MB = 1024 * 1024;
+
+    private WorkingMemory memory;
+
+    @BeforeEach
+    void setUp() {
+        memory = new WorkingMemory();
+        ReflectionTestUtils.setField(memory, "maxTurns", 3);
+        ReflectionTestUtils.setField(memory, "maxSessions", 100);
+        ReflectionTestUtils.setField(memory, "maxMemoryMb", 64L);
+        ReflectionTestUtils.setField(memory, "idleTimeoutMs", 60_000L);
+        ReflectionTestUtils.setField(memory, "localScoreThreshold", 0.75);
+        ReflectionTestUtils.setField(memory, "minLocalMatches", 1);
+    }
+
+    private static MemoryMatch turn(String id, float... values) {
+        return new MemoryMatch(id, 0, "turn " + id, values, Map.of("type", "result"));
+    }
+
+    /** A turn whose embedding alone takes {@code bytes} of the estimate. */
+    private static MemoryMatch largeTurn(String id, int bytes) {
+        return turn(id, new float[bytes / 4]);
+    }
+
+    private List<String> ids(String sessionId) {
+        // A zero query scores every turn 0, so the stable sort keeps the newest-first order
+        return memory.search(sessionId, List.of(0f, 0f), MemoryFilter.none()).stream().map(MemoryMatch::id).toList();
+    }
+
+    private long estimatedBytes() {
+        return (long) memory.stats().get("estimatedBytes");
+    }
+
+    private static void tick() throws InterruptedException {
+        // Access times have millisecond resolution
+        Thread.sleep(5);
+    }
+
+    @Test
+    void turnsComeBackNewestFirstAfterTheBufferWrapsAround() {
+        for (String id : List.of("1", "2", "3", "4", "5")) {
+            memory.record("s", turn(id, 1, 0));
+        }
+
+        assertThat(ids("s")).containsExactly("5", "4", "3");
+    }
+
+    @Test
+    void searchScoresTurnsByCosineSimilarity() {
+        memory.record("s", turn("same", 1, 0));
+        memory.record("s", turn("orthogonal", 0, 1));
+        memory.record("s", turn("close", 1, 0.2f));
+
+        List<MemoryMatch> matches = memory.search("s", List.of(1f, 0f), MemoryFilter.none());
+
+        assertThat(matches).extracting(MemoryMatch::id).containsExactly("same", "close", "orthogonal");
+        assertThat(matches.get(0).score()).isCloseTo(1.0, within(1e-6));
+        assertThat(memory.search("unknown", List.of(1f, 0f), MemoryFilter.none())).isEmpty();
+    }
+
+    @Test
+    void overwrittenTurnsNoLongerCountTowardsTheBytes() {
+        for (String id : List.of("1", "2", "3")) {
+            memory.record("s", turn(id, 1, 0));
+        }
+        long full = estimatedBytes();
+
+        memory.record("s", turn("4", 1, 0));
+        memory.record("s", turn("5", 1, 0));
+
+        assertThat(full).isPositive();
+        assertThat(estimatedBytes()).isEqualTo(full);
+    }
+
+    @Test
+    void idleSessionsAreSweptAndTheirBytesReleased() throws InterruptedException {
+        ReflectionTestUtils.setField(memory, "idleTimeoutMs", 50L);
+        memory.record("idle", turn("1", 1, 0));
+        Thread.sleep(100);
+        memory.record("active", turn("2", 1, 0));
+        long activeBytes = estimatedBytes() / 2;
+
+        memory.evictIdleSessions();
+
+        assertThat(ids("idle")).isEmpty();
+        assertThat(ids("active")).containsExactly("2");
+        assertThat(memory.stats()).containsEntry("sessions", 1).containsEntry("evictedSessions", 1L);
+        assertThat(estimatedBytes()).isEqualTo(activeBytes);
+    }
+
+    @Test
+    void theLeastRecentlyUsedSessionIsEvictedOverTheSessionCap() throws InterruptedException {
+        ReflectionTestUtils.setField(memory, "maxSessions", 2);
+        memory.record("a", turn("1", 1, 0));
+        tick();
+        memory.record("b", turn("2", 1, 0));
+        tick();
+        // Searching counts as use, so b is now the least recently used
+        ids("a");
+        tick();
+
+        memory.record("c", turn("3", 1, 0));
+
+        assertThat(ids("a")).containsExactly("1");
+        assertThat(ids("b")).isEmpty();
+        assertThat(ids("c")).containsExactly("3");
+        assertThat(memory.stats()).containsEntry("sessions", 2).containsEntry("evictedSessions", 1L);
+    }
+
+    @Test
+    void sessionsAreEvictedOverTheByteCap() throws InterruptedException {
+        ReflectionTestUtils.setField(memory, "maxMemoryMb", 1L);
+        memory.record("a", largeTurn("1", 400 * 1024));
+        tick();
+        memory.record("b", largeTurn("2", 400 * 1024));
+        tick();
+
+        memory.record("c", largeTurn("3", 400 * 1024));
+
+        assertThat(ids("a")).isEmpty();
+        assertThat(ids("b")).containsExactly("2");
+        assertThat(ids("c")).containsExactly("3");
+        assertThat(estimatedBytes()).isLessThanOrEqualTo(MB);
+    }
+
+    @Test
+    void theSessionBeingWrittenIsNeverEvicted() {
+        ReflectionTestUtils.setField(memory, "maxMemoryMb", 1L);
+        ReflectionTestUtils.setField(memory, "maxSessions", 1);
+
+        memory.record("only", largeTurn("1", 600 * 1024));
+        memory.record("only", largeTurn("2", 600 * 1024));
+
+        assertThat(ids("only")).containsExactly("2", "1");
+        assertThat(estimatedBytes()).isGreaterThan(MB);
+        assertThat(memory.stats()).containsEntry("evictedSessions", 0L);
+    }
+
+    @Test
+    void localMatchesSufficeOnlyAboveTheScoreThreshold() {
+        MemoryMatch strong = new MemoryMatch("strong", 0.8, "strong", null, Map.of());
+        MemoryMatch weak = new MemoryMatch("weak", 0.7, "weak", null, Map.of());
+
+        assertThat(memory.isSufficient(List.of(weak, strong))).isTrue();
+        assertThat(memory.isSufficient(List.of(weak))).isFalse();
+        assertThat(memory.isSufficient(List.of())).isFalse();
+
+        ReflectionTestUtils.setField(memory, "minLocalMatches", 2);
+        assertThat(memory.isSufficient(List.of(weak, strong))).isFalse();
+
+        assertThat(memory.stats()).containsEntry("localLookups", 1L).containsEntry("remoteLookups", 3L);
+    }
+}
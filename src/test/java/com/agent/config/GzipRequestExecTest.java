@@ -0,0 +1,91 @@
+package com.agent.config;
+
+import org.apache.hc.client5.http.classic.ExecChain;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.io.entity.InputStreamEntity;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class GzipRequestExecTest {
+    private static final int MIN_SIZE = 1024;
+
+    /** Runs the request through the interceptor and returns the entity it passed on. */
+    private static HttpEntity sent(HttpEntity entity) throws Exception {
+        ExecChain chain = mock(ExecChain.class);
+        HttpPost request = new HttpPost("http://localhost/vectors/upsert");
+        request.setEntity(entity);
+
+        new GzipRequestExec(MIN_SIZE).execute(request, null, chain);
+
+        ArgumentCaptor<ClassicHttpRequest> proceeded = ArgumentCaptor.forClass(ClassicHttpRequest.class);
+        verify(chain).proceed(proceeded.capture(), any());
+        return proceeded.getValue().getEntity();
+    }
+
+    private static byte[] body(int size) {
+        byte[] body = new byte[size];
+        for (int i = 0; i < size; i++) {
+            body[i] = (byte) ('a' + i % 26);
+        }
+        return body;
+    }
+
+    private static byte[] bytesOf(HttpEntity entity) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+        return out.toByteArray();
+    }
+
+    @Test
+    void compressesBodiesOfKnownLengthAtTheThreshold() throws Exception {
+        byte[] body = body(MIN_SIZE);
+
+        HttpEntity entity = sent(new ByteArrayEntity(body, ContentType.APPLICATION_JSON));
+
+        assertThat(entity.getContentEncoding()).isEqualTo("gzip");
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytesOf(entity)))) {
+            assertThat(in.readAllBytes()).isEqualTo(body);
+        }
+    }
+
+    @Test
+    void leavesBodiesBelowTheThresholdAlone() throws Exception {
+        ByteArrayEntity small = new ByteArrayEntity(body(MIN_SIZE - 1), ContentType.APPLICATION_JSON);
+
+        assertThat(sent(small)).isSameAs(small);
+    }
+
+    @Test
+    void leavesStreamedBodiesOfUnknownLengthAlone() throws Exception {
+        InputStreamEntity streamed = new InputStreamEntity(
+            new ByteArrayInputStream(body(10 * MIN_SIZE)), -1, ContentType.APPLICATION_JSON);
+
+        assertThat(sent(streamed)).isSameAs(streamed);
+    }
+
+    @Test
+    void leavesAlreadyEncodedBodiesAlone() throws Exception {
+        ByteArrayEntity encoded = new ByteArrayEntity(body(10 * MIN_SIZE), ContentType.APPLICATION_JSON, "br");
+
+        assertThat(sent(encoded)).isSameAs(encoded);
+    }
+
+    @Test
+    void passesRequestsWithoutABodyThrough() throws Exception {
+        assertThat(sent(null)).isNull();
+    }
+}
@@ -0,0 +1,138 @@
+package com.agent.config;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HttpClientConfigTest {
+    private HttpServer server;
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/ok", exchange -> respond(exchange, "{\"ok\":true}"));
+        server.createContext("/slow", exchange -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, "{\"ok\":true}");
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        release.countDown();
+        if (httpClient != null) {
+            httpClient.close();
+        }
+        server.stop(0);
+    }
+
+    private void respond(HttpExchange exchange, String body) throws IOException {
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        exchange.getRequestBody().readAllBytes();
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    /** A RestTemplate wired the way {@link AgentConfig} wires it. */
+    private RestTemplate restTemplate(int maxPerRoute, long responseTimeoutMs, long poolTimeoutMs) {
+        HttpClientConfig config = new HttpClientConfig();
+        ReflectionTestUtils.setField(config, "maxTotal", 10);
+        ReflectionTestUtils.setField(config, "maxPerRoute", maxPerRoute);
+        ReflectionTestUtils.setField(config, "connectTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(config, "responseTimeoutMs", responseTimeoutMs);
+        ReflectionTestUtils.setField(config, "poolTimeoutMs", poolTimeoutMs);
+        ReflectionTestUtils.setField(config, "keepAliveMs", 30_000L);
+        ReflectionTestUtils.setField(config, "idleEvictMs", 30_000L);
+        ReflectionTestUtils.setField(config, "connectionTtlMs", 300_000L);
+        ReflectionTestUtils.setField(config, "validateAfterInactivityMs", 2000L);
+        connectionManager = config.httpConnectionManager();
+        httpClient = config.httpClient(connectionManager);
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+    }
+
+    @Test
+    void sequentialRequestsReuseOnePooledConnection() {
+        RestTemplate restTemplate = restTemplate(5, 5000, 1000);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(restTemplate.getForObject(url("/ok"), String.class)).contains("ok");
+            restTemplate.postForObject(url("/ok"), List.of("body", i), String.class);
+        }
+
+        assertThat(clientPorts).hasSize(1);
+        assertThat(connectionManager.getTotalStats().getAvailable()).isEqualTo(1);
+        assertThat(connectionManager.getTotalStats().getLeased()).isZero();
+    }
+
+    @Test
+    void aResponseSlowerThanTheResponseTimeoutFails() {
+        RestTemplate restTemplate = restTemplate(5, 300, 1000);
+        long started = System.currentTimeMillis();
+
+        assertThatThrownBy(() -> restTemplate.getForObject(url("/slow"), String.class))
+            .isInstanceOf(ResourceAccessException.class)
+            .hasCauseInstanceOf(SocketTimeoutException.class);
+        assertThat(System.currentTimeMillis() - started).isLessThan(3000);
+    }
+
+    @Test
+    void aRequestWaitingForAPooledConnectionGivesUpAfterThePoolTimeout() throws Exception {
+        RestTemplate restTemplate = restTemplate(1, 5000, 200);
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> holding = caller.submit(() -> restTemplate.getForObject(url("/slow"), String.class));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (connectionManager.getTotalStats().getLeased() < 1) {
+                assertThat(System.currentTimeMillis()).isLessThan(deadline);
+                Thread.sleep(5);
+            }
+            long started = System.currentTimeMillis();
+
+            assertThatThrownBy(() -> restTemplate.getForObject(url("/ok"), String.class))
+                .isInstanceOf(ResourceAccessException.class)
+                .hasMessageContaining("Timeout");
+            assertThat(System.currentTimeMillis() - started).isLessThan(2000);
+
+            release.countDown();
+            assertThat(holding.get(5, TimeUnit.SECONDS)).contains("ok");
+        } finally {
+            caller.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.agent.loadtest;
+
+import java.util.Random;
+
+/**
+ * Response behaviour of one stand-in endpoint: log-normal latency around a median plus
+ * an independent error rate. Parsed from specs such as {@code median=20,sigma=0.5,error=0.01}.
+ */
+final class LatencyProfile {
+    private final double medianMs;
+    private final double sigma;
+    private final double errorRate;
+
+    LatencyProfile(double medianMs, double sigma, double errorRate) {
+        this.medianMs = medianMs;
+        this.sigma = sigma;
+        this.errorRate = errorRate;
+    }
+
+    static LatencyProfile parse(String spec) {
+        double median = 0;
+        double sigma = 0;
+        double error = 0;
+        for (String part : spec.split(",")) {
+            String[] keyValue = part.trim().split("=");
+            if (keyValue.length != 2) {
+                throw new IllegalArgumentException("Expected key=value in latency profile, got: " + part);
+            }
+            double value = Double.parseDouble(keyValue[1].trim());
+            switch (keyValue[0].trim()) {
+                case "median" -> median = value;
+                case "sigma" -> sigma = value;
+                case "error" -> error = value;
+                default -> throw new IllegalArgumentException("Unknown latency profile key: " + keyValue[0]);
+            }
+        }
+        return new LatencyProfile(median, sigma, error);
+    }
+
+    static LatencyProfile fromProperty(String name, String defaultSpec) {
+        return parse(System.getProperty(name, defaultSpec));
+    }
+
+    long sampleMillis(Random random) {
+        if (medianMs <= 0) {
+            return 0;
+        }
+        return Math.round(medianMs * Math.exp(sigma * random.nextGaussian()));
+    }
+
+    boolean shouldFail(Random random) {
+        return errorRate > 0 && random.nextDouble() < errorRate;
+    }
+
+    @Override
+    public String toString() {
+        return "median=" + medianMs + ",sigma=" + sigma + ",error=" + errorRate;
+    }
+}
@@ -0,0 +1,68 @@
+package com.agent.loadtest;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects per-endpoint latencies (microseconds) and error counts, and summarises them
+ * into throughput and percentiles once the run is over.
+ */
+final class LatencyRecorder {
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final Map<String, Samples> samples = new ConcurrentHashMap<>();
+
+    private static final class Samples {
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+
+        synchronized void add(long micros, boolean success) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = micros;
+            if (!success) {
+                errors++;
+            }
+        }
+
+        synchronized Map<String, Object> summary(double seconds) {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("count", count);
+            summary.put("errors", errors);
+            summary.put("throughput", count / seconds);
+            for (double percentile : PERCENTILES) {
+                summary.put("p" + formatPercentile(percentile) + "Ms", percentile(sorted, percentile) / 1000.0);
+            }
+            summary.put("maxMs", count == 0 ? 0 : sorted[count - 1] / 1000.0);
+            return summary;
+        }
+    }
+
+    void record(String endpoint, long micros, boolean success) {
+        samples.computeIfAbsent(endpoint, key -> new Samples()).add(micros, success);
+    }
+
+    Map<String, Map<String, Object>> summarize(double seconds) {
+        Map<String, Map<String, Object>> summary = new TreeMap<>();
+        samples.forEach((endpoint, endpointSamples) -> summary.put(endpoint, endpointSamples.summary(seconds)));
+        return summary;
+    }
+
+    static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile)
+            ? String.valueOf((int) percentile)
+            : String.valueOf(percentile).replace(".", "");
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,327 @@
+package com.agent.loadtest;
+
+import com.agent.AgentApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiFunction;
+
+/**
+ * Offline end-to-end load test. Starts stand-in Ollama and Pinecone servers, boots the
+ * application against them and drives an open-loop workload: arrivals follow a Poisson
+ * process at the target rate regardless of how fast responses come back, and latency is
+ * measured from each request's scheduled start so queueing delay is not hidden.
+ *
+ * Run with {@code mvn -Ploadtest verify}. Settings are system properties:
+ * <ul>
+ *   <li>{@code loadtest.rate} requests per second (default 20)</li>
+ *   <li>{@code loadtest.duration-s} / {@code loadtest.warmup-s} measured and warm-up seconds (60 / 10)</li>
+ *   <li>{@code loadtest.mix} weighted workloads, e.g. {@code task:1,search:4,memory:1,health:0};
+ *       {@code conversation} sends tasks as turns of a fixed set of sessions, {@code batch-search}
+ *       searches 50 queries per request</li>
+ *   <li>{@code loadtest.seed} random seed for arrivals, payloads and stand-in behaviour (42)</li>
+ *   <li>{@code loadtest.seed-memories} vectors pre-loaded into the Pinecone stand-in (1000)</li>
+ *   <li>{@code loadtest.ollama.nodes} number of Ollama stand-ins (1)</li>
+ *   <li>{@code loadtest.ollama.parallel} requests each Ollama stand-in serves at once, 0 for unlimited (0)</li>
+ *   <li>{@code loadtest.ollama.embed}, {@code loadtest.ollama.chat}, {@code loadtest.pinecone.query},
+ *       {@code loadtest.pinecone.write} latency profiles, e.g. {@code median=20,sigma=0.5,error=0.01}</li>
+ *   <li>{@code loadtest.baseline} a previous report; the run fails if any endpoint's p99 grew,
+ *       throughput fell or error rate rose by more than {@code loadtest.tolerance} (0.2), or if
+ *       an endpoint of the baseline is missing or never succeeded</li>
+ * </ul>
+ * The report is printed and written to {@code target/loadtest/report.json}.
+ */
+public class LoadTestDriver {
+    private static final int CONVERSATIONS = 50;
+    private static final int BATCH_QUERIES = 50;
+    private static final String[] TOPICS = {
+        "machine learning in healthcare", "climate model forecasts", "stock market indicators",
+        "natural language processing", "warehouse robotics", "vector database indexing",
+        "supply chain planning", "renewable energy storage"
+    };
+
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final LatencyRecorder recorder = new LatencyRecorder();
+    private final Random random;
+    private final long seed;
+    private final double rate;
+    private final int durationSeconds;
+    private final int warmupSeconds;
+    private final Map<String, Integer> mix;
+
+    LoadTestDriver() {
+        this.seed = Long.getLong("loadtest.seed", 42L);
+        this.random = new Random(seed);
+        this.rate = Double.parseDouble(System.getProperty("loadtest.rate", "20"));
+        this.durationSeconds = Integer.getInteger("loadtest.duration-s", 60);
+        this.warmupSeconds = Integer.getInteger("loadtest.warmup-s", 10);
+        this.mix = parseMix(System.getProperty("loadtest.mix", "task:1,search:4,memory:1"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadTestDriver().run();
+    }
+
+    void run() throws Exception {
+        int ollamaNodes = Integer.getInteger("loadtest.ollama.nodes", 1);
+        int ollamaParallel = Integer.getInteger("loadtest.ollama.parallel", 0);
+        LatencyProfile embed = LatencyProfile.fromProperty("loadtest.ollama.embed", "median=15,sigma=0.3,error=0");
+        LatencyProfile chat = LatencyProfile.fromProperty("loadtest.ollama.chat", "median=400,sigma=0.5,error=0");
+        LatencyProfile query = LatencyProfile.fromProperty("loadtest.pinecone.query", "median=25,sigma=0.4,error=0");
+        LatencyProfile write = LatencyProfile.fromProperty("loadtest.pinecone.write", "median=30,sigma=0.4,error=0");
+
+        List<StandInOllamaServer> ollamaServers = new ArrayList<>();
+        try (StandInPineconeServer pinecone = new StandInPineconeServer(seed, query, write)) {
+            try {
+                for (int i = 0; i < ollamaNodes; i++) {
+                    StandInOllamaServer ollama = new StandInOllamaServer(seed + i + 1, "llama2", embed, chat, ollamaParallel);
+                    ollama.start();
+                    ollamaServers.add(ollama);
+                }
+                pinecone.seed(Integer.getInteger("loadtest.seed-memories", 1000), 1024, seed);
+                pinecone.start();
+
+                // System properties, so they win over the environment placeholders in application.properties
+                System.setProperty("server.port", "0");
+                System.setProperty("pinecone.api.key", "loadtest-key");
+                System.setProperty("pinecone.environment", "loadtest");
+                System.setProperty("pinecone.index.name", "loadtest");
+                System.setProperty("pinecone.host", pinecone.baseUrl());
+                System.setProperty("openai.api.key", "unused");
+                System.setProperty("ollama.api.urls",
+                    String.join(",", ollamaServers.stream().map(StandInServer::baseUrl).toList()));
+                System.setProperty("memory.wal.dir", Files.createTempDirectory("loadtest-wal").toString());
+                System.setProperty("logging.level.com.agent", "WARN");
+                // application.properties turns PineconeService up to DEBUG, which logs every query vector
+                System.setProperty("logging.level.com.agent.agent.memory.PineconeService", "WARN");
+
+                try (ConfigurableApplicationContext app = new SpringApplicationBuilder(AgentApplication.class).run()) {
+                    int port = app.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+                    drive("http://127.0.0.1:" + port);
+                }
+            } finally {
+                ollamaServers.forEach(StandInServer::close);
+            }
+            System.out.printf("Pinecone stand-in holds %d vectors after the run%n", pinecone.size());
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("rate", rate);
+        report.put("durationSeconds", durationSeconds);
+        report.put("mix", mix);
+        report.put("seed", seed);
+        report.put("endpoints", recorder.summarize(durationSeconds));
+        printReport(report);
+
+        Path reportPath = Paths.get("target", "loadtest", "report.json");
+        Files.createDirectories(reportPath.getParent());
+        objectMapper.writeValue(reportPath.toFile(), report);
+        System.out.println("Report written to " + reportPath.toAbsolutePath());
+
+        String baseline = System.getProperty("loadtest.baseline");
+        if (baseline != null) {
+            compareToBaseline(report, Paths.get(baseline),
+                Double.parseDouble(System.getProperty("loadtest.tolerance", "0.2")));
+        }
+    }
+
+    private void drive(String appUrl) throws InterruptedException {
+        ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "loadtest-client");
+            thread.setDaemon(true);
+            return thread;
+        });
+        HttpClient client = HttpClient.newBuilder()
+            .executor(executor)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+        Map<String, BiFunction<String, Random, HttpRequest>> workloads = workloads();
+        List<String> weighted = new ArrayList<>();
+        mix.forEach((name, weight) -> {
+            if (!workloads.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown workload '" + name + "', expected one of " + workloads.keySet());
+            }
+            for (int i = 0; i < weight; i++) {
+                weighted.add(name);
+            }
+        });
+
+        Phaser inFlight = new Phaser(1);
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+        double next = start;
+        double meanGapNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        System.out.printf("Driving %s at %.1f req/s for %ds after %ds warm-up, mix %s%n",
+            appUrl, rate, durationSeconds, warmupSeconds, mix);
+
+        while (true) {
+            next += -Math.log(1 - random.nextDouble()) * meanGapNanos;
+            if (next >= end) {
+                break;
+            }
+            long scheduled = (long) next;
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            String workload = weighted.get(random.nextInt(weighted.size()));
+            HttpRequest request = workloads.get(workload).apply(appUrl, random);
+            boolean measured = scheduled >= measureFrom;
+            inFlight.register();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    if (measured) {
+                        long micros = (System.nanoTime() - scheduled) / 1000;
+                        recorder.record(workload, micros, error == null && response.statusCode() < 400);
+                    }
+                    inFlight.arriveAndDeregister();
+                });
+        }
+
+        inFlight.arriveAndDeregister();
+        try {
+            inFlight.awaitAdvanceInterruptibly(0, 2, TimeUnit.MINUTES);
+        } catch (TimeoutException e) {
+            System.out.println("Some requests were still in flight after 2 minutes and are not counted");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Map<String, BiFunction<String, Random, HttpRequest>> workloads() {
+        Map<String, BiFunction<String, Random, HttpRequest>> workloads = new LinkedHashMap<>();
+        workloads.put("task", (url, r) -> post(url + "/api/agent/task", "Summarize what we know about " + topic(r)));
+        workloads.put("conversation", (url, r) -> HttpRequest.newBuilder(URI.create(url + "/api/agent/task"))
+            .timeout(Duration.ofSeconds(60))
+            .header("Content-Type", "text/plain")
+            .header("X-Session-Id", "loadtest-" + r.nextInt(CONVERSATIONS))
+            .POST(HttpRequest.BodyPublishers.ofString("And what else about " + topic(r) + "?"))
+            .build());
+        workloads.put("search", (url, r) -> get(url + "/api/agent/test-semantic-search?query="
+            + URLEncoder.encode(topic(r), StandardCharsets.UTF_8)));
+        workloads.put("memory", (url, r) -> post(url + "/api/agent/memory",
+            "Note " + r.nextInt(1_000_000) + " about " + topic(r)));
+        workloads.put("batch-search", (url, r) -> {
+            StringBuilder body = new StringBuilder("{\"topK\":5,\"queries\":[");
+            for (int i = 0; i < BATCH_QUERIES; i++) {
+                body.append(i == 0 ? "" : ",").append('"').append(topic(r)).append('"');
+            }
+            return HttpRequest.newBuilder(URI.create(url + "/api/agent/search/batch"))
+                .timeout(Duration.ofSeconds(60))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.append("]}").toString()))
+                .build();
+        });
+        workloads.put("health", (url, r) -> get(url + "/api/health"));
+        return workloads;
+    }
+
+    private static String topic(Random random) {
+        return TOPICS[random.nextInt(TOPICS.length)] + " " + random.nextInt(100);
+    }
+
+    private static HttpRequest post(String url, String body) {
+        return HttpRequest.newBuilder(URI.create(url))
+            .timeout(Duration.ofSeconds(60))
+            .header("Content-Type", "text/plain")
+            .POST(HttpRequest.BodyPublishers.ofString(body))
+            .build();
+    }
+
+    private static HttpRequest get(String url) {
+        return HttpRequest.newBuilder(URI.create(url))
+            .timeout(Duration.ofSeconds(60))
+            .GET()
+            .build();
+    }
+
+    private static Map<String, Integer> parseMix(String spec) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.trim().split(":");
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+            if (weight > 0) {
+                mix.put(parts[0].trim(), weight);
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("loadtest.mix selects no workload: " + spec);
+        }
+        return mix;
+    }
+
+    private void printReport(Map<String, Object> report) {
+        System.out.printf("%n%-10s %8s %7s %9s %9s %9s %9s %9s %9s%n",
+            "endpoint", "count", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        ((Map<String, Map<String, Object>>) report.get("endpoints")).forEach((endpoint, stats) ->
+            System.out.printf("%-10s %8d %7d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n", endpoint,
+                stats.get("count"), stats.get("errors"), stats.get("throughput"), stats.get("p50Ms"),
+                stats.get("p90Ms"), stats.get("p99Ms"), stats.get("p999Ms"), stats.get("maxMs")));
+    }
+
+    private void compareToBaseline(Map<String, Object> report, Path baselinePath, double tolerance) throws Exception {
+        Map<String, Object> baseline = objectMapper.readValue(baselinePath.toFile(), Map.class);
+        Map<String, Map<String, Object>> current = (Map<String, Map<String, Object>>) report.get("endpoints");
+        Map<String, Map<String, Object>> previous = (Map<String, Map<String, Object>>) baseline.get("endpoints");
+        List<String> regressions = new ArrayList<>();
+        previous.forEach((endpoint, before) -> {
+            Map<String, Object> after = current.get(endpoint);
+            if (after == null) {
+                regressions.add(endpoint + " has no samples in this run");
+                return;
+            }
+            long countAfter = ((Number) after.get("count")).longValue();
+            long successesAfter = countAfter - ((Number) after.get("errors")).longValue();
+            if (successesAfter <= 0) {
+                regressions.add(endpoint + " had no successful requests");
+                return;
+            }
+            double errorRateBefore = errorRate(before);
+            double errorRateAfter = errorRate(after);
+            if (errorRateAfter > errorRateBefore * (1 + tolerance) + 0.01) {
+                regressions.add(String.format("%s error rate %.2f%% -> %.2f%%", endpoint,
+                    errorRateBefore * 100, errorRateAfter * 100));
+            }
+            double p99Before = ((Number) before.get("p99Ms")).doubleValue();
+            double p99After = ((Number) after.get("p99Ms")).doubleValue();
+            if (p99After > p99Before * (1 + tolerance)) {
+                regressions.add(String.format("%s p99 %.1f ms -> %.1f ms", endpoint, p99Before, p99After));
+            }
+            double throughputBefore = ((Number) before.get("throughput")).doubleValue();
+            double throughputAfter = ((Number) after.get("throughput")).doubleValue();
+            if (throughputAfter < throughputBefore * (1 - tolerance)) {
+                regressions.add(String.format("%s throughput %.1f -> %.1f req/s", endpoint, throughputBefore, throughputAfter));
+            }
+        });
+        if (!regressions.isEmpty()) {
+            throw new IllegalStateException("Performance regression against " + baselinePath + ": " + regressions);
+        }
+        System.out.println("No regression against baseline " + baselinePath);
+    }
+
+    private static double errorRate(Map<String, Object> stats) {
+        long count = ((Number) stats.get("count")).longValue();
+        return count == 0 ? 0 : ((Number) stats.get("errors")).doubleValue() / count;
+    }
+}
@@ -0,0 +1,55 @@
+package com.agent.loadtest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Stand-in for an Ollama host. Embeddings are deterministic pseudo-random vectors seeded
+ * by the input text, so identical texts embed identically across runs. With a positive
+ * {@code parallel}, embedding and chat requests share that many slots and the rest queue,
+ * as with {@code OLLAMA_NUM_PARALLEL}.
+ */
+class StandInOllamaServer extends StandInServer {
+    private static final int DIMENSION = 4096;
+
+    StandInOllamaServer(long seed, String model, LatencyProfile embedLatency, LatencyProfile chatLatency,
+                        int parallel) throws IOException {
+        super(seed);
+        String modelTag = model.contains(":") ? model : model + ":latest";
+        Semaphore slots = parallel > 0 ? new Semaphore(parallel, true) : null;
+
+        route("/api/embeddings", embedLatency, slots, (body, query) ->
+            Map.of("embedding", embed(String.valueOf(body.get("prompt")))));
+
+        route("/api/embed", embedLatency, slots, (body, query) -> {
+            Object input = body.get("input");
+            List<?> texts = input instanceof List<?> list ? list : List.of(String.valueOf(input));
+            List<List<Double>> embeddings = new ArrayList<>(texts.size());
+            texts.forEach(text -> embeddings.add(embed(String.valueOf(text))));
+            return Map.of("model", modelTag, "embeddings", embeddings);
+        });
+
+        route("/api/chat", chatLatency, slots, (body, query) -> Map.of(
+            "model", modelTag,
+            "message", Map.of("role", "assistant", "content", "Stand-in answer " + UUID.randomUUID()),
+            "done", true
+        ));
+
+        route("/api/ps", LatencyProfile.parse("median=0"), (body, query) ->
+            Map.of("models", List.of(Map.of("name", modelTag, "model", modelTag))));
+
+        route("/api/generate", LatencyProfile.parse("median=0"), (body, query) ->
+            Map.of("model", modelTag, "response", "", "done", true));
+    }
+
+    private static List<Double> embed(String text) {
+        Random random = new Random(Arrays.hashCode(text.getBytes(StandardCharsets.UTF_8)));
+        List<Double> embedding = new ArrayList<>(DIMENSION);
+        for (int i = 0; i < DIMENSION; i++) {
+            embedding.add(random.nextGaussian());
+        }
+        return embedding;
+    }
+}
@@ -0,0 +1,181 @@
+package com.agent.loadtest;
+
+import com.agent.agent.memory.MemoryFilter;
+import com.agent.agent.memory.VectorMath;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stand-in for a Pinecone index data plane, backed by an in-memory map per namespace.
+ * Queries are exact brute-force cosine searches over the entries passing the metadata
+ * filter, so query cost grows with the stored set the same way a real index's transfer
+ * and scoring cost does.
+ */
+class StandInPineconeServer extends StandInServer {
+    private final Map<String, Map<String, StoredVector>> namespaces = new ConcurrentHashMap<>();
+
+    private record StoredVector(String id, float[] values, Map<String, Object> metadata) {
+    }
+
+    StandInPineconeServer(long seed, LatencyProfile queryLatency, LatencyProfile writeLatency) throws IOException {
+        super(seed);
+
+        route("/query", queryLatency, (body, query) -> Map.of(
+            "matches", query(namespace(body), toFloats(body.get("vector")),
+                ((Number) body.getOrDefault("topK", 10)).intValue(),
+                MemoryFilter.fromMap((Map<String, Object>) body.get("filter")),
+                Boolean.TRUE.equals(body.get("includeValues")),
+                Boolean.TRUE.equals(body.get("includeMetadata"))),
+            "namespace", namespace(body)
+        ));
+
+        route("/vectors/upsert", writeLatency, (body, query) -> {
+            List<Map<String, Object>> vectors = (List<Map<String, Object>>) body.get("vectors");
+            Map<String, StoredVector> store = store(namespace(body));
+            for (Map<String, Object> vector : vectors) {
+                String id = (String) vector.get("id");
+                Map<String, Object> metadata = (Map<String, Object>) vector.getOrDefault("metadata", Map.of());
+                store.put(id, new StoredVector(id, toFloats(vector.get("values")), metadata));
+            }
+            return Map.of("upsertedCount", vectors.size());
+        });
+
+        route("/vectors/delete", writeLatency, (body, query) -> {
+            Map<String, StoredVector> store = store(namespace(body));
+            if (Boolean.TRUE.equals(body.get("deleteAll"))) {
+                store.clear();
+            } else {
+                ((List<String>) body.getOrDefault("ids", List.of())).forEach(store::remove);
+            }
+            return Map.of();
+        });
+
+        route("/vectors/update", writeLatency, (body, query) -> {
+            Map<String, StoredVector> store = store(namespace(body));
+            store.computeIfPresent((String) body.get("id"), (id, existing) -> {
+                Map<String, Object> metadata = new HashMap<>(existing.metadata());
+                metadata.putAll((Map<String, Object>) body.getOrDefault("setMetadata", Map.of()));
+                float[] values = body.containsKey("values") ? toFloats(body.get("values")) : existing.values();
+                return new StoredVector(id, values, metadata);
+            });
+            return Map.of();
+        });
+
+        route("/vectors/fetch", queryLatency, (body, query) -> {
+            Map<String, StoredVector> store = store(first(query, "namespace", ""));
+            Map<String, Object> vectors = new LinkedHashMap<>();
+            for (String id : query.getOrDefault("ids", List.of())) {
+                StoredVector vector = store.get(id);
+                if (vector != null) {
+                    vectors.put(id, toMap(vector, true, true));
+                }
+            }
+            return Map.of("vectors", vectors, "namespace", first(query, "namespace", ""));
+        });
+
+        route("/vectors/list", queryLatency, (body, query) -> {
+            List<String> ids = new ArrayList<>(store(first(query, "namespace", "")).keySet());
+            Collections.sort(ids);
+            int limit = Integer.parseInt(first(query, "limit", "100"));
+            int offset = Integer.parseInt(first(query, "paginationToken", "0"));
+            List<Map<String, Object>> page = new ArrayList<>();
+            for (int i = offset; i < Math.min(ids.size(), offset + limit); i++) {
+                page.add(Map.of("id", ids.get(i)));
+            }
+            Map<String, Object> response = new HashMap<>();
+            response.put("vectors", page);
+            if (offset + limit < ids.size()) {
+                response.put("pagination", Map.of("next", String.valueOf(offset + limit)));
+            }
+            return response;
+        });
+    }
+
+    /**
+     * Pre-load random unit vectors so queries scan a realistic corpus from the start.
+     */
+    void seed(int count, int dimension, long seed) {
+        Random random = new Random(seed);
+        Map<String, StoredVector> store = store("");
+        for (int i = 0; i < count; i++) {
+            float[] values = new float[dimension];
+            for (int d = 0; d < dimension; d++) {
+                values[d] = (float) random.nextGaussian();
+            }
+            String id = "seed-" + i;
+            store.put(id, new StoredVector(id, values, Map.of(
+                "text", "Seeded memory " + i,
+                "type", "result",
+                "source", "memory",
+                "timestamp", System.currentTimeMillis()
+            )));
+        }
+    }
+
+    int size() {
+        return namespaces.values().stream().mapToInt(Map::size).sum();
+    }
+
+    private Map<String, StoredVector> store(String namespace) {
+        return namespaces.computeIfAbsent(namespace, key -> new ConcurrentHashMap<>());
+    }
+
+    private List<Map<String, Object>> query(String namespace, float[] vector, int topK, MemoryFilter filter,
+                                            boolean includeValues, boolean includeMetadata) {
+        PriorityQueue<Map.Entry<Double, StoredVector>> best =
+            new PriorityQueue<>(Map.Entry.comparingByKey());
+        for (StoredVector candidate : store(namespace).values()) {
+            if (!filter.matches(candidate.metadata())) {
+                continue;
+            }
+            best.add(Map.entry(VectorMath.cosine(vector, candidate.values()), candidate));
+            if (best.size() > topK) {
+                best.poll();
+            }
+        }
+        List<Map<String, Object>> matches = new ArrayList<>();
+        while (!best.isEmpty()) {
+            Map.Entry<Double, StoredVector> entry = best.poll();
+            Map<String, Object> match = toMap(entry.getValue(), includeValues, includeMetadata);
+            match.put("score", entry.getKey());
+            matches.add(0, match);
+        }
+        return matches;
+    }
+
+    private static Map<String, Object> toMap(StoredVector vector, boolean includeValues, boolean includeMetadata) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", vector.id());
+        if (includeValues) {
+            List<Float> values = new ArrayList<>(vector.values().length);
+            for (float value : vector.values()) {
+                values.add(value);
+            }
+            map.put("values", values);
+        }
+        if (includeMetadata) {
+            map.put("metadata", vector.metadata());
+        }
+        return map;
+    }
+
+    private static String namespace(Map<String, Object> body) {
+        return String.valueOf(body.getOrDefault("namespace", ""));
+    }
+
+    private static String first(Map<String, List<String>> query, String key, String defaultValue) {
+        List<String> values = query.get(key);
+        return values == null || values.isEmpty() ? defaultValue : values.get(0);
+    }
+
+    private static float[] toFloats(Object values) {
+        List<?> list = values instanceof List<?> l ? l : List.of();
+        float[] floats = new float[list.size()];
+        for (int i = 0; i < floats.length; i++) {
+            floats[i] = ((Number) list.get(i)).floatValue();
+        }
+        return floats;
+    }
+}
@@ -0,0 +1,141 @@
+package com.agent.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal in-process JSON server on an ephemeral port. Each route sleeps for a latency
+ * sampled from its {@link LatencyProfile} and fails with a 500 at the profile's error rate
+ * before the handler runs. Routes sharing a {@link Semaphore} of slots are served at most
+ * that many at a time, like a model server with fixed parallelism.
+ *
+ * The n-th request to a route draws from its own generator, seeded from the server seed,
+ * the path and n, so a seeded run samples the same latencies and failures no matter how
+ * handler threads interleave.
+ */
+abstract class StandInServer implements AutoCloseable {
+    protected final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long seed;
+
+    interface Handler {
+        Object handle(Map<String, Object> body, Map<String, List<String>> query) throws Exception;
+    }
+
+    StandInServer(long seed) throws IOException {
+        this.seed = seed;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, getClass().getSimpleName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+    }
+
+    protected void route(String path, LatencyProfile profile, Handler handler) {
+        route(path, profile, null, handler);
+    }
+
+    protected void route(String path, LatencyProfile profile, Semaphore slots, Handler handler) {
+        AtomicLong requests = new AtomicLong();
+        long routeSeed = seed ^ ((long) path.hashCode() << 32);
+        server.createContext(path, exchange -> {
+            try {
+                if (!exchange.getRequestURI().getPath().equals(path)) {
+                    send(exchange, 404, Map.of("error", "not found"));
+                    return;
+                }
+                Random random = new Random(routeSeed ^ (requests.incrementAndGet() * 0x9E3779B97F4A7C15L));
+                Map<String, Object> body = readBody(exchange);
+                if (slots != null) {
+                    slots.acquire();
+                }
+                Object response;
+                try {
+                    long latency = profile.sampleMillis(random);
+                    if (latency > 0) {
+                        Thread.sleep(latency);
+                    }
+                    if (profile.shouldFail(random)) {
+                        send(exchange, 500, Map.of("error", "injected failure"));
+                        return;
+                    }
+                    response = handler.handle(body, parseQuery(exchange.getRequestURI().getRawQuery()));
+                } finally {
+                    if (slots != null) {
+                        slots.release();
+                    }
+                }
+                send(exchange, 200, response);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                send(exchange, 500, Map.of("error", String.valueOf(e.getMessage())));
+            } finally {
+                exchange.close();
+            }
+        });
+    }
+
+    void start() {
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private Map<String, Object> readBody(HttpExchange exchange) throws IOException {
+        try (InputStream input = exchange.getRequestBody()) {
+            byte[] bytes = input.readAllBytes();
+            if (bytes.length == 0) {
+                return Collections.emptyMap();
+            }
+            return objectMapper.readValue(bytes, Map.class);
+        }
+    }
+
+    private static Map<String, List<String>> parseQuery(String rawQuery) {
+        Map<String, List<String>> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int separator = pair.indexOf('=');
+            String key = URLDecoder.decode(separator < 0 ? pair : pair.substring(0, separator), StandardCharsets.UTF_8);
+            String value = separator < 0 ? "" : URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8);
+            query.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+        }
+        return query;
+    }
+
+    private void send(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.agent.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OllamaEndpointPoolTest {
+    private static final int MAX_FAILURES = 3;
+
+    private final List<StubOllama> stubs = new ArrayList<>();
+    private OllamaEndpointPool pool;
+
+    /**
+     * A local Ollama stand-in whose probe, work and model-load answers can be switched per test.
+     */
+    private static final class StubOllama {
+        private final HttpServer server;
+        private final AtomicInteger workRequests = new AtomicInteger();
+        private volatile int psStatus = 200;
+        private volatile int workStatus = 200;
+        private volatile int generateStatus = 200;
+        private volatile String residentModel;
+        private volatile CountDownLatch generateGate;
+
+        StubOllama() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/api/ps", exchange -> respond(exchange, psStatus, residentModel == null
+                ? "{\"models\":[]}"
+                : "{\"models\":[{\"name\":\"" + residentModel + "\"}]}"));
+            server.createContext("/api/generate", exchange -> {
+                CountDownLatch gate = generateGate;
+                if (gate != null) {
+                    try {
+                        gate.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                respond(exchange, generateStatus, "{}");
+            });
+            server.createContext("/work", exchange -> {
+                workRequests.incrementAndGet();
+                respond(exchange, workStatus, "{\"ok\":true}");
+            });
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.start();
+        }
+
+        String url() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        }
+    }
+
+    private OllamaEndpointPool pool(int endpointCount, boolean warmModels) throws IOException {
+        for (int i = 0; i < endpointCount; i++) {
+            stubs.add(new StubOllama());
+        }
+        pool = new OllamaEndpointPool("test", stubs.stream().map(StubOllama::url).toList(), new RestTemplate());
+        ReflectionTestUtils.setField(pool, "model", "llama2");
+        ReflectionTestUtils.setField(pool, "keepAlive", "5m");
+        ReflectionTestUtils.setField(pool, "maxAttempts", 2);
+        ReflectionTestUtils.setField(pool, "maxFailures", MAX_FAILURES);
+        ReflectionTestUtils.setField(pool, "ejectionMs", 60_000L);
+        ReflectionTestUtils.setField(pool, "warmModels", warmModels);
+        ReflectionTestUtils.setField(pool, "schedulerPolicy", "weighted");
+        ReflectionTestUtils.setField(pool, "concurrencyPerEndpoint", 4);
+        ReflectionTestUtils.setField(pool, "schedulerWeights", List.<String>of());
+        ReflectionTestUtils.setField(pool, "schedulerLimits", List.<String>of());
+        ReflectionTestUtils.setField(pool, "schedulerAgingMs", 2000L);
+        ReflectionTestUtils.setField(pool, "schedulerQueueTimeoutMs", 5000L);
+        pool.initScheduler();
+        return pool;
+    }
+
+    @AfterEach
+    void stopStubs() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+        stubs.forEach(stub -> stub.server.stop(0));
+    }
+
+    private String work(RestTemplate restTemplate) {
+        return pool.execute(RequestPriority.INTERACTIVE, baseUrl -> restTemplate.getForObject(baseUrl + "/work", String.class));
+    }
+
+    private OllamaEndpoint endpoint(int index) {
+        return pool.getEndpoints().get(index);
+    }
+
+    @Test
+    void choosesTheLessLoadedOfTwoEndpoints() throws IOException {
+        pool(2, false);
+        // With two endpoints both are always sampled, so the choice is deterministic
+        OllamaEndpoint first = pool.acquire(Set.of());
+        OllamaEndpoint second = pool.acquire(Set.of());
+        assertThat(second).isNotSameAs(first);
+
+        first.end();
+        assertThat(pool.acquire(Set.of())).isSameAs(first);
+    }
+
+    @Test
+    void prefersAnEndpointWithTheModelLoaded() throws IOException {
+        pool(2, false);
+        stubs.get(1).residentModel = "llama2:latest";
+        pool.checkHealth();
+
+        // Residency wins over load
+        for (int i = 0; i < 5; i++) {
+            assertThat(pool.acquire(Set.of())).isSameAs(endpoint(1));
+        }
+    }
+
+    @Test
+    void spreadsLoadAcrossThreeEndpoints() throws IOException {
+        pool(3, false);
+        List<OllamaEndpoint> held = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            held.add(pool.acquire(Set.of()));
+        }
+        // Power-of-two-choices keeps every host within a few requests of the others
+        for (OllamaEndpoint endpoint : pool.getEndpoints()) {
+            assertThat(endpoint.getOutstanding()).isBetween(6, 14);
+        }
+        held.forEach(OllamaEndpoint::end);
+    }
+
+    @Test
+    void failsOverAndEjectsAfterMaxFailures() throws IOException {
+        pool(2, false);
+        stubs.get(0).workStatus = 500;
+        RestTemplate restTemplate = new RestTemplate();
+
+        // Every request succeeds, failing over to the healthy host when needed
+        for (int i = 0; i < 40; i++) {
+            assertThat(work(restTemplate)).contains("ok");
+        }
+        assertThat(stubs.get(0).workRequests.get()).isEqualTo(MAX_FAILURES);
+        assertThat(endpoint(0).isAvailable(System.currentTimeMillis())).isFalse();
+
+        int ejectedRequests = stubs.get(0).workRequests.get();
+        for (int i = 0; i < 10; i++) {
+            work(restTemplate);
+        }
+        assertThat(stubs.get(0).workRequests.get()).isEqualTo(ejectedRequests);
+    }
+
+    @Test
+    void readmitsAnEjectedEndpointOnceItsProbeSucceeds() throws IOException {
+        pool(2, false);
+        stubs.get(0).psStatus = 500;
+        for (int i = 0; i < MAX_FAILURES; i++) {
+            pool.checkHealth();
+        }
+        assertThat(endpoint(0).isAvailable(System.currentTimeMillis())).isFalse();
+        assertThat(endpoint(1).isAvailable(System.currentTimeMillis())).isTrue();
+
+        stubs.get(0).psStatus = 200;
+        pool.checkHealth();
+        assertThat(endpoint(0).isAvailable(System.currentTimeMillis())).isTrue();
+    }
+
+    @Test
+    void schedulerCapacityFollowsTheAvailableEndpoints() throws IOException {
+        pool(3, false);
+        assertThat(pool.schedulerSnapshot()).containsEntry("maxConcurrency", 12);
+
+        stubs.get(0).psStatus = 500;
+        stubs.get(1).psStatus = 500;
+        for (int i = 0; i < MAX_FAILURES; i++) {
+            pool.checkHealth();
+        }
+        assertThat(pool.schedulerSnapshot()).containsEntry("maxConcurrency", 4);
+
+        stubs.get(0).psStatus = 200;
+        pool.checkHealth();
+        assertThat(pool.schedulerSnapshot()).containsEntry("maxConcurrency", 8);
+    }
+
+    @Test
+    void failsWhenEveryEndpointFails() throws IOException {
+        pool(2, false);
+        stubs.forEach(stub -> stub.workStatus = 503);
+        assertThatThrownBy(() -> work(new RestTemplate())).isInstanceOf(RuntimeException.class);
+    }
+
+    @Test
+    void slowOrFailingModelLoadsNeitherBlockProbesNorEject() throws Exception {
+        pool(2, true);
+        StubOllama cold = stubs.get(0);
+        cold.generateStatus = 500;
+        cold.generateGate = new CountDownLatch(1);
+        stubs.get(1).residentModel = "llama2:latest";
+
+        long started = System.currentTimeMillis();
+        for (int i = 0; i < MAX_FAILURES + 1; i++) {
+            pool.checkHealth();
+        }
+        assertThat(System.currentTimeMillis() - started).isLessThan(2000);
+
+        cold.generateGate.countDown();
+        Thread.sleep(200);
+        pool.checkHealth();
+        assertThat(endpoint(0).isAvailable(System.currentTimeMillis())).isTrue();
+        assertThat(endpoint(0).isResident("llama2:latest")).isFalse();
+    }
+}
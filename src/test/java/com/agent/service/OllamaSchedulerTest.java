@@ -0,0 +1,210 @@
+package com.agent.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OllamaSchedulerTest {
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private final List<RequestPriority> admissions = Collections.synchronizedList(new ArrayList<>());
+    private CountDownLatch blocker = new CountDownLatch(1);
+
+    @AfterEach
+    void stopCallers() {
+        blocker.countDown();
+        callers.shutdownNow();
+    }
+
+    private static OllamaScheduler scheduler(OllamaScheduler.Policy policy, int maxConcurrency, Map<RequestPriority, Double> weights,
+                                             Map<RequestPriority, Integer> limits, long agingMs, long queueTimeoutMs) {
+        return new OllamaScheduler("test", policy, maxConcurrency, weights, limits, agingMs, queueTimeoutMs);
+    }
+
+    /** Occupies a slot until the test ends or releases the blocker. */
+    private Future<?> hold(OllamaScheduler scheduler, RequestPriority priority) {
+        CountDownLatch blocker = this.blocker;
+        return callers.submit(() -> scheduler.run(priority, () -> {
+            try {
+                return blocker.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }));
+    }
+
+    /** Queues a request that records its admission and then holds its slot for a while. */
+    private Future<?> enqueue(OllamaScheduler scheduler, RequestPriority priority, long holdMs) throws InterruptedException {
+        int queued = stat(scheduler, priority, "queued");
+        Future<?> future = callers.submit(() -> scheduler.run(priority, () -> {
+            admissions.add(priority);
+            try {
+                Thread.sleep(holdMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }));
+        // Wait until it is queued, so requests queue in submission order
+        awaitStat(scheduler, priority, "queued", queued + 1);
+        return future;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int stat(OllamaScheduler scheduler, RequestPriority priority, String key) {
+        Map<String, Object> classes = (Map<String, Object>) scheduler.snapshot().get("classes");
+        return ((Number) ((Map<String, Object>) classes.get(priority.getKey())).get(key)).intValue();
+    }
+
+    private static void awaitStat(OllamaScheduler scheduler, RequestPriority priority, String key, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (stat(scheduler, priority, key) != expected) {
+            assertThat(System.currentTimeMillis()).as("%s %s reaches %d", priority, key, expected).isLessThan(deadline);
+            Thread.sleep(2);
+        }
+    }
+
+    private static void awaitAll(List<Future<?>> futures) throws Exception {
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void weightedAdmissionSharesSlotsByWeight() throws Exception {
+        OllamaScheduler scheduler = scheduler(OllamaScheduler.Policy.WEIGHTED, 1,
+            Map.of(RequestPriority.INTERACTIVE, 3.0, RequestPriority.INGESTION, 1.0), Map.of(), 0, 10_000);
+        hold(scheduler, RequestPriority.HEALTH);
+        awaitStat(scheduler, RequestPriority.HEALTH, "inFlight", 1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(enqueue(scheduler, RequestPriority.INGESTION, 0));
+            futures.add(enqueue(scheduler, RequestPriority.INTERACTIVE, 0));
+        }
+
+        blocker.countDown();
+        awaitAll(futures);
+
+        // While both classes have work queued, interactive gets three of every four slots
+        List<RequestPriority> firstTwenty = admissions.subList(0, 20);
+        assertThat(Collections.frequency(firstTwenty, RequestPriority.INTERACTIVE)).isBetween(14, 16);
+        assertThat(admissions).hasSize(40);
+    }
+
+    @Test
+    void strictAdmissionServesTheMostUrgentClassFirst() throws Exception {
+        OllamaScheduler scheduler = scheduler(OllamaScheduler.Policy.STRICT, 1, Map.of(), Map.of(), 0, 10_000);
+        hold(scheduler, RequestPriority.HEALTH);
+        awaitStat(scheduler, RequestPriority.HEALTH, "inFlight", 1);
+        List<Future<?>> futures = new ArrayList<>();
+        futures.add(enqueue(scheduler, RequestPriority.INGESTION, 0));
+        futures.add(enqueue(scheduler, RequestPriority.MEMORY_WRITE, 0));
+        futures.add(enqueue(scheduler, RequestPriority.INTERACTIVE, 0));
+
+        blocker.countDown();
+        awaitAll(futures);
+
+        assertThat(admissions).containsExactly(RequestPriority.INTERACTIVE, RequestPriority.MEMORY_WRITE, RequestPriority.INGESTION);
+    }
+
+    @Test
+    void classLimitsKeepSlotsFreeForOtherClasses() throws Exception {
+        OllamaScheduler scheduler = scheduler(OllamaScheduler.Policy.WEIGHTED, 4, Map.of(),
+            Map.of(RequestPriority.INGESTION, 2), 0, 10_000);
+        for (int i = 0; i < 4; i++) {
+            hold(scheduler, RequestPriority.INGESTION);
+        }
+        awaitStat(scheduler, RequestPriority.INGESTION, "inFlight", 2);
+        awaitStat(scheduler, RequestPriority.INGESTION, "queued", 2);
+
+        // Ingestion has two slots idle but cannot take them; interactive requests can
+        assertThat(scheduler.run(RequestPriority.INTERACTIVE, () -> "done")).isEqualTo("done");
+        hold(scheduler, RequestPriority.INTERACTIVE);
+        hold(scheduler, RequestPriority.INTERACTIVE);
+        awaitStat(scheduler, RequestPriority.INTERACTIVE, "inFlight", 2);
+        assertThat(scheduler.snapshot()).containsEntry("inFlight", 4);
+        assertThat(stat(scheduler, RequestPriority.INGESTION, "queued")).isEqualTo(2);
+    }
+
+    @Test
+    void aRequestThatWaitsPastTheQueueTimeoutFails() throws Exception {
+        OllamaScheduler scheduler = scheduler(OllamaScheduler.Policy.WEIGHTED, 1, Map.of(), Map.of(), 0, 100);
+        hold(scheduler, RequestPriority.INTERACTIVE);
+        awaitStat(scheduler, RequestPriority.INTERACTIVE, "inFlight", 1);
+
+        long started = System.currentTimeMillis();
+        assertThatThrownBy(() -> scheduler.run(RequestPriority.INGESTION, () -> "never"))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("Timed out after 100 ms");
+        assertThat(System.currentTimeMillis() - started).isBetween(90L, 2000L);
+        assertThat(stat(scheduler, RequestPriority.INGESTION, "timedOut")).isEqualTo(1);
+        assertThat(stat(scheduler, RequestPriority.INGESTION, "queued")).isZero();
+
+        // The timed out request left no trace in the accounting
+        blocker.countDown();
+        assertThat(scheduler.run(RequestPriority.INGESTION, () -> "admitted")).isEqualTo("admitted");
+    }
+
+    /**
+     * Ingestion has just had a turn, so with a 100:1 weight it would wait for about a
+     * hundred interactive requests. Returns how many went ahead of it.
+     */
+    private int interactiveAdmittedBeforeIngestion(OllamaScheduler.Policy policy, long agingMs) throws Exception {
+        OllamaScheduler scheduler = scheduler(policy, 1,
+            Map.of(RequestPriority.INTERACTIVE, 100.0, RequestPriority.INGESTION, 1.0), Map.of(), agingMs, 10_000);
+        scheduler.run(RequestPriority.INGESTION, () -> null);
+        admissions.clear();
+        blocker = new CountDownLatch(1);
+        hold(scheduler, RequestPriority.INTERACTIVE);
+        awaitStat(scheduler, RequestPriority.INTERACTIVE, "inFlight", 1);
+        List<Future<?>> futures = new ArrayList<>();
+        futures.add(enqueue(scheduler, RequestPriority.INGESTION, 0));
+        for (int i = 0; i < 30; i++) {
+            futures.add(enqueue(scheduler, RequestPriority.INTERACTIVE, 20));
+        }
+
+        blocker.countDown();
+        awaitAll(futures);
+        return admissions.indexOf(RequestPriority.INGESTION);
+    }
+
+    @Test
+    void weightedAdmissionAgesWaitingRequests() throws Exception {
+        assertThat(interactiveAdmittedBeforeIngestion(OllamaScheduler.Policy.WEIGHTED, 0)).isEqualTo(30);
+        // Credited a full ingestion turn after 100 ms of waiting, i.e. within a few 20 ms requests
+        assertThat(interactiveAdmittedBeforeIngestion(OllamaScheduler.Policy.WEIGHTED, 100)).isLessThan(15);
+    }
+
+    @Test
+    void strictAdmissionAgesWaitingRequests() throws Exception {
+        assertThat(interactiveAdmittedBeforeIngestion(OllamaScheduler.Policy.STRICT, 0)).isEqualTo(30);
+        assertThat(interactiveAdmittedBeforeIngestion(OllamaScheduler.Policy.STRICT, 50)).isLessThan(20);
+    }
+
+    @Test
+    void raisingTheConcurrencyAdmitsQueuedRequests() throws Exception {
+        OllamaScheduler scheduler = scheduler(OllamaScheduler.Policy.WEIGHTED, 1, Map.of(), Map.of(), 0, 10_000);
+        hold(scheduler, RequestPriority.INTERACTIVE);
+        awaitStat(scheduler, RequestPriority.INTERACTIVE, "inFlight", 1);
+        hold(scheduler, RequestPriority.INTERACTIVE);
+        awaitStat(scheduler, RequestPriority.INTERACTIVE, "queued", 1);
+
+        scheduler.setMaxConcurrency(2);
+        awaitStat(scheduler, RequestPriority.INTERACTIVE, "inFlight", 2);
+        assertThat(stat(scheduler, RequestPriority.INTERACTIVE, "limit")).isEqualTo(2);
+
+        // Lowering it lets running requests finish but admits nothing new until they do
+        scheduler.setMaxConcurrency(1);
+        Future<?> queued = enqueue(scheduler, RequestPriority.INTERACTIVE, 0);
+        assertThat(stat(scheduler, RequestPriority.INTERACTIVE, "inFlight")).isEqualTo(2);
+        blocker.countDown();
+        queued.get(5, TimeUnit.SECONDS);
+        assertThat(admissions).containsExactly(RequestPriority.INTERACTIVE);
+        assertThatThrownBy(() -> scheduler.setMaxConcurrency(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}